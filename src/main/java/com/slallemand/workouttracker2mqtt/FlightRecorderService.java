@@ -0,0 +1,74 @@
+package com.slallemand.workouttracker2mqtt;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Starts a continuous, low-overhead JDK Flight Recorder recording when enabled.
+ * The recording uses the JDK "default" settings and keeps a bounded ring of data on disk,
+ * which can be dumped on demand with: jcmd &lt;pid&gt; JFR.dump name=workouttracker2mqtt filename=dump.jfr
+ */
+@ApplicationScoped
+public class FlightRecorderService {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderService.class);
+
+    static final String RECORDING_NAME = "workouttracker2mqtt";
+
+    @ConfigProperty(name = "jfr.recording.enabled", defaultValue = "false")
+    boolean recordingEnabled;
+
+    @ConfigProperty(name = "jfr.recording.max.age", defaultValue = "3600000")
+    long recordingMaxAge;
+
+    @ConfigProperty(name = "jfr.recording.max.size", defaultValue = "52428800")
+    long recordingMaxSize;
+
+    @ConfigProperty(name = "jfr.recording.dump.path")
+    Optional<String> recordingDumpPath;
+
+    private Recording recording;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!recordingEnabled) {
+            return;
+        }
+
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+            recording.setName(RECORDING_NAME);
+            recording.setToDisk(true);
+            recording.setMaxAge(Duration.ofMillis(recordingMaxAge));
+            recording.setMaxSize(recordingMaxSize);
+            if (recordingDumpPath.isPresent() && !recordingDumpPath.get().isEmpty()) {
+                // Written when the recording stops, including on shutdown
+                recording.setDestination(Path.of(recordingDumpPath.get()));
+                recording.setDumpOnExit(true);
+            }
+            recording.start();
+            log.info("Started continuous JFR recording '" + RECORDING_NAME + "' (max age: " + recordingMaxAge + "ms, max size: " + recordingMaxSize + " bytes)");
+        } catch (Exception e) {
+            log.warn("Failed to start JFR recording: " + e.getMessage(), e);
+            recording = null;
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (recording != null) {
+            recording.stop();
+            recording.close();
+            log.info("Stopped JFR recording '" + RECORDING_NAME + "'");
+        }
+    }
+}
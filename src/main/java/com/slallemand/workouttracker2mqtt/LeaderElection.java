@@ -0,0 +1,279 @@
+package com.slallemand.workouttracker2mqtt;
+
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Leader election between several instances, using a retained lease on the MQTT broker.
+ *
+ * The leader periodically renews a retained lease message ({"owner", "renewedAt", "ttl"}).
+ * Standby instances take over once the lease has not been renewed for its TTL, or as soon as
+ * the leader releases it, either explicitly on shutdown or through its last-will message when
+ * it disconnects ungracefully. If two instances claim the lease at the same time, the one
+ * with the lowest client ID keeps it.
+ *
+ * Lease expiry is measured on the local monotonic clock from the time the lease is received,
+ * so instances do not depend on synchronized wall clocks. Last-will messages are published,
+ * not retained, on a separate release topic: the will of a crashed standby must never replace
+ * the retained lease of the leader.
+ *
+ * The lease decisions only depend on a {@link LeaseBroker} and a clock, so that they can be tested
+ * without a broker.
+ */
+final class LeaderElection {
+
+    /**
+     * Broker operations used by the election, implemented by the shared MQTT client
+     */
+    interface LeaseBroker {
+        boolean isConnected();
+
+        void reconnect() throws Exception;
+
+        void subscribe(String topic, BiConsumer<String, byte[]> listener) throws Exception;
+
+        void publish(String topic, byte[] payload, boolean retained) throws Exception;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderElection.class);
+
+    private final String topic;
+    private final String releaseTopic;
+    private final String clientId;
+    private final long leaseTtl;
+    private final LongSupplier clock;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private volatile boolean leader = false;
+    private volatile boolean subscribed = false;
+
+    // Owner of the last lease seen on the lease topic, and when that lease expires (local monotonic millis)
+    private volatile String leaseOwner;
+    private volatile long leaseExpiresAt = EXPIRED;
+
+    private static final long EXPIRED = Long.MIN_VALUE;
+
+    /**
+     * @param topic Retained lease topic, last-will releases are published on its 'release' subtopic
+     * @param clientId Unique MQTT client ID of this instance, used as lease owner
+     * @param leaseTtl Time (milliseconds) after which a lease that was not renewed expires
+     */
+    LeaderElection(String topic, String clientId, long leaseTtl) {
+        this(topic, clientId, leaseTtl, LeaderElection::monotonicMillis);
+    }
+
+    /**
+     * @param clock Monotonic clock (milliseconds) measuring lease expiry
+     */
+    LeaderElection(String topic, String clientId, long leaseTtl, LongSupplier clock) {
+        this.topic = topic;
+        this.releaseTopic = topic + "/release";
+        this.clientId = clientId;
+        this.leaseTtl = leaseTtl;
+        this.clock = clock;
+    }
+
+    /**
+     * @return The election operations of an MQTT client, at QoS 1
+     */
+    static LeaseBroker leaseBroker(MqttClient client) {
+        return new LeaseBroker() {
+            @Override
+            public boolean isConnected() {
+                return client.isConnected();
+            }
+
+            @Override
+            public void reconnect() throws Exception {
+                client.reconnect();
+            }
+
+            @Override
+            public void subscribe(String topic, BiConsumer<String, byte[]> listener) throws Exception {
+                client.subscribe(topic, 1, (messageTopic, message) -> listener.accept(messageTopic, message.getPayload()));
+            }
+
+            @Override
+            public void publish(String topic, byte[] payload, boolean retained) throws Exception {
+                client.publish(topic, payload, 1, retained);
+            }
+        };
+    }
+
+    /**
+     * @return true if this instance currently holds the lease
+     */
+    boolean isLeader() {
+        return leader;
+    }
+
+    /**
+     * @param leaseTtl Time (milliseconds) after which a lease that was not renewed expires
+     * @return Interval (milliseconds) at which the lease should be renewed or checked
+     */
+    static long renewInterval(long leaseTtl) {
+        return Math.max(1000, leaseTtl / 3);
+    }
+
+    /**
+     * Configures the last-will message releasing the lease when this instance disconnects ungracefully.
+     * Every instance sets it, so it goes to the release topic and is not retained: only the instances
+     * connected at that time need it, and it is ignored unless its owner holds the lease.
+     */
+    void configureWill(MqttConnectOptions connOpts) {
+        connOpts.setWill(releaseTopic, releasePayload(), 1, false);
+    }
+
+    /**
+     * Renews the lease when leader, or claims it when the current lease has expired.
+     * Must be called every {@link #renewInterval(long)} milliseconds.
+     */
+    void heartbeat(MqttClient client) {
+        if (client != null) {
+            heartbeat(leaseBroker(client));
+        }
+    }
+
+    /**
+     * @see #heartbeat(MqttClient)
+     */
+    synchronized void heartbeat(LeaseBroker client) {
+        if (!client.isConnected()) {
+            stepDown("MQTT connection lost");
+            subscribed = false;
+            try {
+                client.reconnect();
+            } catch (Exception e) {
+                log.debug("Failed to reconnect MQTT client for leader election: " + e.getMessage());
+            }
+            return;
+        }
+
+        if (!subscribed) {
+            try {
+                client.subscribe(topic, this::onLease);
+                client.subscribe(releaseTopic, this::onLease);
+                subscribed = true;
+                log.debug("Subscribed to leader lease topics: " + topic + ", " + releaseTopic);
+            } catch (Exception e) {
+                log.warn("Failed to subscribe to leader lease topic '" + topic + "': " + e.getMessage());
+            }
+            // Let the retained lease arrive before deciding to claim it
+            return;
+        }
+
+        long now = clock.getAsLong();
+        // Our own lease, e.g. held before a reconnection, can be renewed right away
+        if (!leader && leaseOwner != null && !leaseOwner.equals(clientId) && now < leaseExpiresAt) {
+            return;
+        }
+
+        try {
+            ObjectNode lease = mapper.createObjectNode();
+            lease.put("owner", clientId);
+            // Informational only, expiry is computed by each instance from the time it receives the lease
+            lease.put("renewedAt", System.currentTimeMillis());
+            lease.put("ttl", leaseTtl);
+            client.publish(topic, mapper.writeValueAsBytes(lease), true);
+            if (!leader) {
+                log.info("Acquired leadership (lease topic: " + topic + ", previous owner: " + (leaseOwner != null ? leaseOwner : "none") + ")");
+            }
+            leader = true;
+            leaseOwner = clientId;
+            leaseExpiresAt = now + leaseTtl;
+        } catch (Exception e) {
+            stepDown("failed to renew lease: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the lease so that a standby instance can take over immediately
+     */
+    void release(MqttClient client) {
+        if (client != null) {
+            release(leaseBroker(client));
+        }
+    }
+
+    /**
+     * @see #release(MqttClient)
+     */
+    synchronized void release(LeaseBroker client) {
+        if (!leader || !client.isConnected()) {
+            return;
+        }
+        try {
+            client.publish(topic, releasePayload(), true);
+            log.info("Released leadership (lease topic: " + topic + ")");
+        } catch (Exception e) {
+            log.warn("Failed to release leader lease: " + e.getMessage());
+        }
+        leader = false;
+    }
+
+    /**
+     * Handles a lease message. Called on the MQTT callback thread, so it must not publish.
+     */
+    void onLease(String messageTopic, byte[] payload) {
+        try {
+            if (payload == null || payload.length == 0) {
+                leaseExpiresAt = EXPIRED;
+                return;
+            }
+            JsonNode lease = mapper.readTree(payload);
+            String owner = lease.path("owner").asText("");
+            if (owner.isEmpty() || owner.equals(clientId)) {
+                // Our own lease, or an echo of it
+                return;
+            }
+
+            if (lease.path("released").asBoolean(false)) {
+                if (owner.equals(leaseOwner)) {
+                    log.info("Leader " + owner + " released the lease");
+                    leaseExpiresAt = EXPIRED;
+                }
+                return;
+            }
+
+            if (leader) {
+                if (owner.compareTo(clientId) > 0) {
+                    // Concurrent claim from an instance that loses the tie-break, it will step down
+                    return;
+                }
+                stepDown("lease claimed by " + owner);
+            }
+            leaseOwner = owner;
+            // Measured from the local receive time, the remote clock may be far off (e.g. no RTC before NTP sync)
+            long ttl = lease.path("ttl").asLong(leaseTtl);
+            leaseExpiresAt = clock.getAsLong() + ttl;
+            log.debug("Leader lease held by " + owner + ", expires in " + ttl + "ms unless renewed");
+        } catch (Exception e) {
+            log.warn("Ignoring invalid leader lease message: " + e.getMessage());
+        }
+    }
+
+    private void stepDown(String reason) {
+        if (leader) {
+            log.warn("Lost leadership: " + reason);
+            leader = false;
+        }
+    }
+
+    private static long monotonicMillis() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private byte[] releasePayload() {
+        return ("{\"owner\":\"" + clientId + "\",\"released\":true}").getBytes(StandardCharsets.UTF_8);
+    }
+}
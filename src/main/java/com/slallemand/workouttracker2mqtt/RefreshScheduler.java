@@ -0,0 +1,135 @@
+package com.slallemand.workouttracker2mqtt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Schedules the fetch-and-publish cycles of the workouts and statistics routes, triggered by their timers
+ * or on demand by refresh commands.
+ *
+ * At most one cycle of each route runs at a time: timer ticks are skipped while a cycle of the same route
+ * is running, while on-demand refreshes wait for it and then run their own cycle. Refresh commands received
+ * while a refresh is in flight are coalesced into a single extra refresh, run once the current one completes.
+ */
+final class RefreshScheduler {
+
+    /**
+     * Fetch-and-publish cycle of a route
+     */
+    interface Cycle {
+        void run() throws Exception;
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshScheduler.class);
+
+    private final Executor executor;
+    private final Cycle workouts;
+    private final Cycle statistics;
+
+    // Set while on-demand refreshes are running, and when another refresh was requested in the meantime
+    private final AtomicBoolean refreshInFlight = new AtomicBoolean(false);
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+
+    // At most one cycle per route at a time, whether triggered by its timer or on demand
+    private final Semaphore workoutsPermit = new Semaphore(1);
+    private final Semaphore statisticsPermit = new Semaphore(1);
+
+    /**
+     * @param executor Runs the on-demand refreshes, outside of the thread receiving the refresh commands
+     * @param workouts Cycle of the workouts route
+     * @param statistics Cycle of the statistics route
+     */
+    RefreshScheduler(Executor executor, Cycle workouts, Cycle statistics) {
+        this.executor = executor;
+        this.workouts = workouts;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Runs an immediate cycle of workouts and statistics.
+     * Requests received while a refresh is already in flight are coalesced into a single extra refresh.
+     */
+    void requestRefresh() {
+        refreshPending.set(true);
+        if (!refreshInFlight.compareAndSet(false, true)) {
+            log.debug("Refresh already in progress, another refresh will run once it completes");
+            return;
+        }
+
+        log.info("Refresh command received, fetching workouts and statistics");
+        try {
+            executor.execute(this::runRefreshes);
+        } catch (RejectedExecutionException e) {
+            refreshInFlight.set(false);
+            log.warn("Refresh command rejected: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a cycle of the workouts route on a timer tick, unless one is already running
+     *
+     * @return false if the tick was skipped
+     */
+    boolean tickWorkouts() throws Exception {
+        return runCycle(workouts, workoutsPermit, false, "workouts");
+    }
+
+    /**
+     * Runs a cycle of the statistics route on a timer tick, unless one is already running
+     *
+     * @return false if the tick was skipped
+     */
+    boolean tickStatistics() throws Exception {
+        return runCycle(statistics, statisticsPermit, false, "statistics");
+    }
+
+    /**
+     * Runs refreshes until none is pending. A refresh requested while one is running gets exactly one more
+     * cycle afterwards, as the running one may have fetched the workouts before the change that triggered it.
+     */
+    private void runRefreshes() {
+        do {
+            try {
+                while (refreshPending.getAndSet(false)) {
+                    try {
+                        runCycle(workouts, workoutsPermit, true, "workouts");
+                        runCycle(statistics, statisticsPermit, true, "statistics");
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        log.warn("On-demand refresh failed: " + e.getMessage(), e);
+                    }
+                }
+            } finally {
+                refreshInFlight.set(false);
+            }
+            // A refresh requested between the last check and the reset of the in-flight flag must not be lost
+        } while (refreshPending.get() && refreshInFlight.compareAndSet(false, true));
+    }
+
+    /**
+     * @param wait true to wait for a running cycle to complete and then run another one (on-demand refresh),
+     *             false to skip the cycle if one is already running (timer tick)
+     * @return false if the cycle was skipped
+     */
+    private static boolean runCycle(Cycle cycle, Semaphore permit, boolean wait, String route) throws Exception {
+        if (wait) {
+            permit.acquire();
+        } else if (!permit.tryAcquire()) {
+            log.debug("A cycle of the " + route + " route is already running, skipping timer tick");
+            return false;
+        }
+        try {
+            cycle.run();
+            return true;
+        } finally {
+            permit.release();
+        }
+    }
+}
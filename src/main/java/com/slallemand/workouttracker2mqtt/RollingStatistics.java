@@ -0,0 +1,306 @@
+package com.slallemand.workouttracker2mqtt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Incrementally maintained statistics of a workout type: all-time totals, plus the totals of
+ * some windows ending today (current week, current month, current year, trailing 30 days).
+ *
+ * Values are keyed buckets, each dated to a day: the date buckets of the statistics endpoint, or
+ * single workouts. Each update only applies the buckets whose values changed, as deltas, to the
+ * totals and to a per-day ring buffer keyed by epoch day. The ring covers the past year and the next
+ * month, so when the current day changes the window totals are recomputed from its slots, without
+ * going through the buckets: days before the ring range expire in place, and buckets dated slightly
+ * ahead (e.g. the next monthly bucket) are already in their slot when their day comes. The ring is only
+ * rebuilt from the buckets when a bucket is dated beyond the ring range, or when the day moves back.
+ * A window is only exact if the buckets are not coarser than it, e.g. monthly buckets give exact month
+ * and year totals but not week totals.
+ */
+final class RollingStatistics {
+
+    /**
+     * Windows ending today, with the name prefix of their JSON fields
+     */
+    enum Window {
+        WEEK("week"),
+        MONTH("month"),
+        YEAR("year"),
+        LAST_30_DAYS("last30Days");
+
+        final String fieldPrefix;
+
+        Window(String fieldPrefix) {
+            this.fieldPrefix = fieldPrefix;
+        }
+
+        long start(LocalDate currentDate) {
+            return switch (this) {
+                case WEEK -> currentDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+                case MONTH -> currentDate.withDayOfMonth(1).toEpochDay();
+                case YEAR -> currentDate.withDayOfYear(1).toEpochDay();
+                case LAST_30_DAYS -> currentDate.toEpochDay() - 29;
+            };
+        }
+    }
+
+    // Covers the current year (366 days) and the next month
+    private static final int RING_DAYS = 400;
+    private static final int FUTURE_DAYS = 31;
+    static final long NO_DAY = Long.MIN_VALUE;
+
+    // Last seen values of each bucket, keyed by the bucket key
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private long generation = 0;
+    private int changed = 0;
+
+    private final long[] ringDay = new long[RING_DAYS];
+    private final double[] ringDistance = new double[RING_DAYS];
+    private final int[] ringWorkouts = new int[RING_DAYS];
+    // Latest day of the buckets given since the ring was last rebuilt
+    private long latestDay = NO_DAY;
+
+    private final Window[] windows;
+    private long today = NO_DAY;
+    private final long[] windowStart;
+    private final double[] windowDistance;
+    private final int[] windowWorkouts;
+
+    private double totalDistance = 0.0;
+    private int totalWorkouts = 0;
+
+    private static final class Bucket {
+        long epochDay;
+        double distance;
+        int workouts;
+        long generation;
+
+        Bucket(long epochDay) {
+            this.epochDay = epochDay;
+        }
+    }
+
+    /**
+     * @param windows Windows maintained by this instance
+     */
+    RollingStatistics(Window... windows) {
+        this.windows = windows.clone();
+        this.windowStart = new long[windows.length];
+        this.windowDistance = new double[windows.length];
+        this.windowWorkouts = new int[windows.length];
+        java.util.Arrays.fill(ringDay, NO_DAY);
+    }
+
+    /**
+     * Applies the buckets of a statistics response
+     *
+     * @param typeBuckets The 'results.buckets.&lt;type&gt;.buckets' object, keyed by date
+     * @param currentDate Current date, defining the windows
+     * @return Number of buckets that changed since the previous update
+     */
+    synchronized int update(JsonNode typeBuckets, LocalDate currentDate) {
+        begin(currentDate);
+        Iterator<Map.Entry<String, JsonNode>> fields = typeBuckets.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            put(field.getKey(), parseEpochDay(field.getKey()),
+                field.getValue().path("distance").asDouble(0.0), field.getValue().path("workouts").asInt(0));
+        }
+        return end();
+    }
+
+    /**
+     * Starts a full update: every bucket must then be given to {@link #put}, and the update completed
+     * with {@link #end()}
+     *
+     * @param currentDate Current date, defining the windows
+     */
+    synchronized void begin(LocalDate currentDate) {
+        rollTo(currentDate);
+        generation++;
+        changed = 0;
+    }
+
+    /**
+     * Sets the values of a bucket, applying the difference with its previous values
+     *
+     * @param key Bucket key
+     * @param epochDay Day the bucket is counted on, or {@link #NO_DAY} to only count it in the all-time totals
+     * @param distance Distance (meters)
+     * @param workouts Number of workouts
+     */
+    synchronized void put(String key, long epochDay, double distance, int workouts) {
+        Bucket bucket = buckets.get(key);
+        boolean moved = false;
+        if (bucket == null) {
+            bucket = new Bucket(epochDay);
+            buckets.put(key, bucket);
+        } else if (bucket.epochDay != epochDay) {
+            // The bucket moved to another day (e.g. an edited workout date)
+            applyDelta(bucket.epochDay, -bucket.distance, -bucket.workouts);
+            bucket.epochDay = epochDay;
+            bucket.distance = 0.0;
+            bucket.workouts = 0;
+            moved = true;
+        }
+        bucket.generation = generation;
+        latestDay = Math.max(latestDay, epochDay);
+
+        boolean valuesChanged = distance != bucket.distance || workouts != bucket.workouts;
+        if (valuesChanged) {
+            applyDelta(epochDay, distance - bucket.distance, workouts - bucket.workouts);
+            bucket.distance = distance;
+            bucket.workouts = workouts;
+        }
+        if (moved || valuesChanged) {
+            changed++;
+        }
+    }
+
+    /**
+     * Completes a full update, removing the buckets that were not given since {@link #begin}
+     *
+     * @return Number of buckets that changed since the previous update
+     */
+    synchronized int end() {
+        // Buckets missing from this update (e.g. deleted workouts) are removed from the totals
+        Iterator<Bucket> existing = buckets.values().iterator();
+        while (existing.hasNext()) {
+            Bucket bucket = existing.next();
+            if (bucket.generation != generation) {
+                applyDelta(bucket.epochDay, -bucket.distance, -bucket.workouts);
+                existing.remove();
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Writes the all-time totals to a statistics JSON object
+     */
+    synchronized void writeTotalsTo(ObjectNode node) {
+        node.put("totalDistance", round(totalDistance));
+        node.put("totalWorkouts", totalWorkouts);
+    }
+
+    /**
+     * Writes the window totals to a statistics JSON object
+     *
+     * @param currentDate Current date, the windows are moved to it if the day changed since the last update
+     */
+    synchronized void writeWindowsTo(ObjectNode node, LocalDate currentDate) {
+        rollTo(currentDate);
+        for (int window = 0; window < windows.length; window++) {
+            node.put(windows[window].fieldPrefix + "Distance", round(windowDistance[window]));
+            node.put(windows[window].fieldPrefix + "Workouts", windowWorkouts[window]);
+        }
+    }
+
+    /**
+     * Moves the windows to a new current day, recomputing the window totals from the ring slots.
+     * Only does work once per day.
+     */
+    private void rollTo(LocalDate currentDate) {
+        long day = currentDate.toEpochDay();
+        if (day == today) {
+            return;
+        }
+        // Days leaving the ring range expire in place. The ring only misses buckets before its first fill,
+        // when the day moves back (days before the previous range were dropped), or when a bucket was dated
+        // beyond the end of the previous range
+        boolean rebuild = today == NO_DAY || day < today || latestDay > today + FUTURE_DAYS;
+        today = day;
+        for (int window = 0; window < windows.length; window++) {
+            windowStart[window] = windows[window].start(currentDate);
+        }
+
+        if (rebuild) {
+            java.util.Arrays.fill(ringDay, NO_DAY);
+            java.util.Arrays.fill(ringDistance, 0.0);
+            java.util.Arrays.fill(ringWorkouts, 0);
+            latestDay = NO_DAY;
+            for (Bucket bucket : buckets.values()) {
+                addToRing(bucket.epochDay, bucket.distance, bucket.workouts);
+                latestDay = Math.max(latestDay, bucket.epochDay);
+            }
+        }
+
+        java.util.Arrays.fill(windowDistance, 0.0);
+        java.util.Arrays.fill(windowWorkouts, 0);
+        for (int slot = 0; slot < RING_DAYS; slot++) {
+            if (ringDay[slot] != NO_DAY) {
+                addToWindows(ringDay[slot], ringDistance[slot], ringWorkouts[slot]);
+            }
+        }
+    }
+
+    private void applyDelta(long epochDay, double distance, int workouts) {
+        totalDistance += distance;
+        totalWorkouts += workouts;
+        if (addToRing(epochDay, distance, workouts)) {
+            addToWindows(epochDay, distance, workouts);
+        }
+    }
+
+    /**
+     * Adds values to the ring buffer slot of a day, if the day is within the ring range
+     *
+     * @return true if the day is within the ring range
+     */
+    private boolean addToRing(long epochDay, double distance, int workouts) {
+        if (epochDay == NO_DAY || epochDay > today + FUTURE_DAYS || epochDay <= today + FUTURE_DAYS - RING_DAYS) {
+            return false;
+        }
+        int slot = (int) Math.floorMod(epochDay, (long) RING_DAYS);
+        if (ringDay[slot] != epochDay) {
+            ringDay[slot] = epochDay;
+            ringDistance[slot] = 0.0;
+            ringWorkouts[slot] = 0;
+        }
+        ringDistance[slot] += distance;
+        ringWorkouts[slot] += workouts;
+        return true;
+    }
+
+    private void addToWindows(long epochDay, double distance, int workouts) {
+        if (epochDay > today) {
+            return;
+        }
+        for (int window = 0; window < windows.length; window++) {
+            if (epochDay >= windowStart[window]) {
+                windowDistance[window] += distance;
+                windowWorkouts[window] += workouts;
+            }
+        }
+    }
+
+    /**
+     * Parses a bucket key or workout date (e.g. "2022-08-04" or "2022-08-04T07:30:00Z") to an epoch day
+     *
+     * @return The epoch day, or {@link #NO_DAY} if the date cannot be parsed
+     */
+    static long parseEpochDay(String date) {
+        if (date == null || date.length() < 10) {
+            return NO_DAY;
+        }
+        try {
+            return LocalDate.parse(date.substring(0, 10)).toEpochDay();
+        } catch (DateTimeParseException e) {
+            return NO_DAY;
+        }
+    }
+
+    // Deltas are accumulated in floating point, round to the millimeter to hide the drift
+    private static double round(double value) {
+        return Math.round(value * 1000.0) / 1000.0;
+    }
+}
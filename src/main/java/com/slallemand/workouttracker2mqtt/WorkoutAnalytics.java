@@ -0,0 +1,265 @@
+package com.slallemand.workouttracker2mqtt;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+
+/**
+ * Derived analytics of a workout, computed from the per-point series in data.details.points:
+ * kilometer splits, best 1 km and 5 km efforts, pace variability and elevation gain.
+ *
+ * One instance is kept per workout type. The point series are read token by token from a JSON
+ * parser straight into primitive buffers that are reused across ticks, without building per-point
+ * objects. The analytics are only computed again when the latest workout ID changes; a workout
+ * without usable details is analyzed again on later ticks, as its details may not be available yet.
+ */
+final class WorkoutAnalytics {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double SPLIT_DISTANCE = 1000.0;
+    private static final double BEST_SHORT_DISTANCE = 1000.0;
+    private static final double BEST_LONG_DISTANCE = 5000.0;
+    // Climbs smaller than this are considered GPS noise and not counted in the elevation gain
+    private static final double ELEVATION_NOISE_THRESHOLD = 1.0;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    // Cumulative distance (meters), cumulative duration (nanoseconds) and elevation (meters) per point
+    private double[] distance = new double[INITIAL_CAPACITY];
+    private long[] duration = new long[INITIAL_CAPACITY];
+    private double[] elevation = new double[INITIAL_CAPACITY];
+    private int size;
+
+    // Kilometer split durations (seconds)
+    private double[] splits = new double[64];
+    private int splitCount;
+
+    private long analyzedWorkoutId = Long.MIN_VALUE;
+    private String analyticsJson;
+
+    /**
+     * @return true if the analytics of this workout were already computed
+     */
+    synchronized boolean isAnalyzed(long workoutId) {
+        return analyticsJson != null && workoutId == analyzedWorkoutId;
+    }
+
+    /**
+     * @return The analytics JSON of this workout, or null if it was not analyzed
+     */
+    synchronized String getAnalytics(long workoutId) {
+        return isAnalyzed(workoutId) ? analyticsJson : null;
+    }
+
+    /**
+     * Computes the analytics of a workout from its data.details.points series
+     *
+     * @param mapper Object mapper used to serialize the analytics
+     * @param workoutId ID of the workout
+     * @param points Parser positioned on the start of the points array, left on its end
+     * @return The analytics JSON, or null if the workout has no usable details
+     */
+    synchronized String analyze(ObjectMapper mapper, long workoutId, JsonParser points) throws IOException {
+        load(points);
+        if (size < 2 || distance[size - 1] <= distance[0]) {
+            return null;
+        }
+
+        computeSplits();
+
+        ObjectNode analytics = mapper.createObjectNode();
+        analytics.put("workoutId", workoutId);
+        analytics.put("points", size);
+        ArrayNode splitsNode = analytics.putArray("splits");
+        for (int i = 0; i < splitCount; i++) {
+            splitsNode.add(round(splits[i]));
+        }
+        putIfFinite(analytics, "best1km", bestEffort(BEST_SHORT_DISTANCE));
+        putIfFinite(analytics, "best5km", bestEffort(BEST_LONG_DISTANCE));
+        putIfFinite(analytics, "paceVariability", paceVariability());
+        putIfFinite(analytics, "elevationGain", elevationGain());
+
+        // Only recorded once analyzed, so that a workout first returned without details is analyzed later
+        analyzedWorkoutId = workoutId;
+        analyticsJson = mapper.writeValueAsString(analytics);
+        return analyticsJson;
+    }
+
+    /**
+     * @return Number of points loaded by the last analysis
+     */
+    synchronized int getPointCount() {
+        return size;
+    }
+
+    /**
+     * Reads the point series token by token into the primitive buffers, growing them if needed
+     */
+    private void load(JsonParser points) throws IOException {
+        size = 0;
+        if (points.currentToken() != JsonToken.START_ARRAY) {
+            points.skipChildren();
+            return;
+        }
+
+        double totalDistance = 0.0;
+        long totalDuration = 0;
+        for (JsonToken token = points.nextToken(); token != JsonToken.END_ARRAY && token != null; token = points.nextToken()) {
+            if (token != JsonToken.START_OBJECT) {
+                points.skipChildren();
+                continue;
+            }
+
+            double pointTotalDistance = Double.NaN;
+            double pointDistance = 0.0;
+            long pointTotalDuration = -1;
+            long pointDuration = 0;
+            double pointElevation = Double.NaN;
+            while (points.nextToken() == JsonToken.FIELD_NAME) {
+                String field = points.currentName();
+                JsonToken value = points.nextToken();
+                switch (field) {
+                    case "totalDistance" -> pointTotalDistance = points.getValueAsDouble(totalDistance);
+                    case "distance" -> pointDistance = points.getValueAsDouble(0.0);
+                    case "totalDuration" -> pointTotalDuration = points.getValueAsLong(totalDuration);
+                    case "duration" -> pointDuration = points.getValueAsLong(0);
+                    case "elevation" -> pointElevation = value.isNumeric() ? points.getDoubleValue() : Double.NaN;
+                    default -> {
+                    }
+                }
+                // Skips nested values, of ignored fields or of fields with an unexpected type
+                points.skipChildren();
+            }
+            totalDistance = !Double.isNaN(pointTotalDistance) ? pointTotalDistance : totalDistance + pointDistance;
+            totalDuration = pointTotalDuration >= 0 ? pointTotalDuration : totalDuration + pointDuration;
+
+            // Skip points going backwards, the series must be monotonic for the sliding windows
+            if (size > 0 && (totalDistance < distance[size - 1] || totalDuration < duration[size - 1])) {
+                continue;
+            }
+            if (size == distance.length) {
+                int capacity = distance.length * 2;
+                distance = java.util.Arrays.copyOf(distance, capacity);
+                duration = java.util.Arrays.copyOf(duration, capacity);
+                elevation = java.util.Arrays.copyOf(elevation, capacity);
+            }
+            distance[size] = totalDistance;
+            duration[size] = totalDuration;
+            elevation[size] = pointElevation;
+            size++;
+        }
+    }
+
+    /**
+     * Computes the duration of each full kilometer, interpolating the time at which each mark is crossed
+     */
+    private void computeSplits() {
+        splitCount = 0;
+        double nextMark = distance[0] + SPLIT_DISTANCE;
+        double lastMarkTime = duration[0];
+        for (int i = 1; i < size; i++) {
+            while (distance[i] >= nextMark) {
+                double markTime = timeAt(i - 1, nextMark);
+                if (splitCount == splits.length) {
+                    splits = java.util.Arrays.copyOf(splits, splits.length * 2);
+                }
+                splits[splitCount++] = (markTime - lastMarkTime) / NANOS_PER_SECOND;
+                lastMarkTime = markTime;
+                nextMark += SPLIT_DISTANCE;
+            }
+        }
+    }
+
+    /**
+     * Finds the fastest time (seconds) over the given distance with a sliding window over the cumulative distance
+     *
+     * @return The best effort in seconds, or NaN if the workout is shorter than the distance
+     */
+    private double bestEffort(double effortDistance) {
+        double best = Double.POSITIVE_INFINITY;
+        int start = 0;
+        for (int end = 1; end < size; end++) {
+            double startDistance = distance[end] - effortDistance;
+            if (startDistance < distance[0]) {
+                continue;
+            }
+            while (start + 1 < end && distance[start + 1] <= startDistance) {
+                start++;
+            }
+            double elapsed = (duration[end] - timeAt(start, startDistance)) / NANOS_PER_SECOND;
+            if (elapsed < best) {
+                best = elapsed;
+            }
+        }
+        return best == Double.POSITIVE_INFINITY ? Double.NaN : best;
+    }
+
+    /**
+     * @return Coefficient of variation (percent) of the kilometer splits, or NaN with less than two splits
+     */
+    private double paceVariability() {
+        if (splitCount < 2) {
+            return Double.NaN;
+        }
+        double sum = 0.0;
+        for (int i = 0; i < splitCount; i++) {
+            sum += splits[i];
+        }
+        double mean = sum / splitCount;
+        double squares = 0.0;
+        for (int i = 0; i < splitCount; i++) {
+            double delta = splits[i] - mean;
+            squares += delta * delta;
+        }
+        return mean > 0 ? Math.sqrt(squares / splitCount) / mean * 100.0 : Double.NaN;
+    }
+
+    /**
+     * @return Total climb (meters) ignoring climbs below the noise threshold, or NaN without elevation data
+     */
+    private double elevationGain() {
+        double gain = 0.0;
+        double reference = Double.NaN;
+        for (int i = 0; i < size; i++) {
+            double current = elevation[i];
+            if (Double.isNaN(current)) {
+                continue;
+            }
+            if (Double.isNaN(reference) || current < reference) {
+                reference = current;
+            } else if (current - reference >= ELEVATION_NOISE_THRESHOLD) {
+                gain += current - reference;
+                reference = current;
+            }
+        }
+        return Double.isNaN(reference) ? Double.NaN : gain;
+    }
+
+    /**
+     * Interpolates the cumulative duration (nanoseconds) at a distance between point index and the next one
+     */
+    private double timeAt(int index, double atDistance) {
+        if (index + 1 >= size) {
+            return duration[index];
+        }
+        double segment = distance[index + 1] - distance[index];
+        if (segment <= 0) {
+            return duration[index];
+        }
+        double ratio = (atDistance - distance[index]) / segment;
+        return duration[index] + (duration[index + 1] - duration[index]) * ratio;
+    }
+
+    private static void putIfFinite(ObjectNode node, String field, double value) {
+        if (Double.isFinite(value)) {
+            node.put(field, round(value));
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,138 @@
+package com.slallemand.workouttracker2mqtt;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events emitted on the poll/parse/publish hot path.
+ * Each stage of a tick is recorded as its own event so slow ticks can be attributed
+ * to HTTP, JSON parsing, statistics aggregation, analytics, re-serialization or MQTT publishing.
+ */
+final class WorkoutEvents {
+
+    private static final String CATEGORY = "Workout Tracker";
+
+    private WorkoutEvents() {
+    }
+
+    @Name("workouttracker.Fetch")
+    @Label("REST API Fetch")
+    @Category({CATEGORY, "HTTP"})
+    @Description("Call to the workout-tracker REST API")
+    static final class FetchEvent extends Event {
+        @Label("URL")
+        String url;
+
+        @Label("Status Code")
+        int statusCode;
+
+        @Label("Response Size")
+        @Description("Size of the response body, 0 without a response or when its size is unknown")
+        @DataAmount
+        long responseSize;
+    }
+
+    @Name("workouttracker.Parse")
+    @Label("Response Parse")
+    @Category({CATEGORY, "JSON"})
+    @Description("Stream parsing of a REST API response")
+    static final class ParseEvent extends Event {
+        @Label("Route")
+        String route;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadSize;
+
+        @Label("Workout Count")
+        @Description("Number of workouts in a workouts response, 0 for other responses")
+        int workoutCount;
+
+        @Label("Selected Type Count")
+        @Description("Number of selected workout types found in a workouts response, 0 for other responses")
+        int selectedTypeCount;
+    }
+
+    @Name("workouttracker.Aggregate")
+    @Label("Statistics Aggregation")
+    @Category({CATEGORY, "Processing"})
+    @Description("Incremental aggregation of the statistics buckets of a type")
+    static final class AggregateEvent extends Event {
+        @Label("Workout Type")
+        String workoutType;
+
+        @Label("Bucket Count")
+        int bucketCount;
+
+        @Label("Changed Bucket Count")
+        int changedBuckets;
+    }
+
+    @Name("workouttracker.Analyze")
+    @Label("Workout Analytics")
+    @Category({CATEGORY, "Processing"})
+    @Description("Computation of the derived analytics of a workout")
+    static final class AnalyticsEvent extends Event {
+        @Label("Workout Type")
+        String workoutType;
+
+        @Label("Workout ID")
+        long workoutId;
+
+        @Label("Point Count")
+        int pointCount;
+    }
+
+    @Name("workouttracker.Serialize")
+    @Label("Workout Serialization")
+    @Category({CATEGORY, "JSON"})
+    @Description("Serialization of the latest workout of a type")
+    static final class SerializeEvent extends Event {
+        @Label("Workout Type")
+        String workoutType;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadSize;
+    }
+
+    @Name("workouttracker.Publish")
+    @Label("MQTT Publish")
+    @Category({CATEGORY, "MQTT"})
+    @Description("Single attempt to publish a message to the MQTT broker")
+    static final class PublishEvent extends Event {
+        @Label("Topic")
+        String topic;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadSize;
+
+        @Label("Attempt")
+        int attempt;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("workouttracker.RetrySleep")
+    @Label("MQTT Retry Sleep")
+    @Category({CATEGORY, "MQTT"})
+    @Description("Backoff sleep before retrying an MQTT publish")
+    static final class RetrySleepEvent extends Event {
+        @Label("Topic")
+        String topic;
+
+        @Label("Attempt")
+        int attempt;
+
+        @Label("Retry Delay")
+        @Timespan(Timespan.MILLISECONDS)
+        long retryDelay;
+    }
+}
@@ -1,21 +1,38 @@
 package com.slallemand.workouttracker2mqtt;
 
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.Priority;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.interceptor.Interceptor;
 import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
+import org.apache.camel.LoggingLevel;
 import org.apache.camel.Producer;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.StreamCache;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.paho.PahoComponent;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -42,6 +59,21 @@ public class WorkoutRoute extends RouteBuilder {
     @ConfigProperty(name = "workouttracker.api.key.header.name", defaultValue = "Authorization")
     String apiKeyHeaderName;
 
+    @ConfigProperty(name = "workouttracker.api.connect.timeout", defaultValue = "5000")
+    long apiConnectTimeout;
+
+    @ConfigProperty(name = "workouttracker.api.read.timeout", defaultValue = "30000")
+    long apiReadTimeout;
+
+    @ConfigProperty(name = "workouttracker.api.request.timeout", defaultValue = "45000")
+    long apiRequestTimeout;
+
+    @ConfigProperty(name = "workouttracker.api.stale.max.age", defaultValue = "3600000")
+    long apiStaleMaxAge;
+
+    @ConfigProperty(name = "memory.rss.target.mb")
+    Optional<Long> rssTargetMb;
+
     @ConfigProperty(name = "mqtt.broker.url")
     String mqttBrokerUrl;
 
@@ -63,6 +95,15 @@ public class WorkoutRoute extends RouteBuilder {
     @ConfigProperty(name = "mqtt.broker.password")
     String mqttBrokerPassword;
 
+    @ConfigProperty(name = "refresh.command.enabled", defaultValue = "true")
+    boolean refreshCommandEnabled;
+
+    @ConfigProperty(name = "leader.election.enabled", defaultValue = "false")
+    boolean leaderElectionEnabled;
+
+    @ConfigProperty(name = "leader.election.lease.ttl", defaultValue = "30000")
+    long leaderLeaseTtl;
+
     @ConfigProperty(name = "camel.route.timer.period", defaultValue = "60000")
     long timerPeriod;
 
@@ -81,16 +122,56 @@ public class WorkoutRoute extends RouteBuilder {
     @ConfigProperty(name = "workout.types", defaultValue = "running,cycling")
     String workoutTypes;
 
+    @ConfigProperty(name = "workout.analytics.enabled", defaultValue = "true")
+    boolean analyticsEnabled;
+
+    @ConfigProperty(name = "workout.processing.parallel", defaultValue = "false")
+    boolean parallelProcessing;
+
+    @ConfigProperty(name = "workout.processing.parallelism", defaultValue = "4")
+    int processingParallelism;
+
     // Hardcoded MQTT topics (enforced structure)
     private static final String MQTT_BASE_TOPIC = "workouttracker";
     private static final String MQTT_WORKOUTS_TOPIC = MQTT_BASE_TOPIC + "/workouts";
     private static final String MQTT_STATISTICS_TOPIC = MQTT_BASE_TOPIC + "/statistics";
+    private static final String MQTT_LEADER_TOPIC = MQTT_BASE_TOPIC + "/leader";
+    private static final String MQTT_REFRESH_COMMAND_TOPIC = MQTT_BASE_TOPIC + "/command/refresh";
+
+    // Internal endpoints running a fetch-and-publish cycle, triggered by the timers or on demand
+    private static final String FETCH_WORKOUTS_ENDPOINT = "direct:fetch-workouts";
+    private static final String FETCH_STATISTICS_ENDPOINT = "direct:fetch-statistics";
+
+    // Shared object mapper, thread-safe and reused across ticks along with its buffers
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Exchange property holding the in-flight JFR fetch event between the HTTP call boundaries
+    private static final String FETCH_EVENT_PROPERTY = "workouttracker.fetchEvent";
 
     // Unique client ID for this instance (generated from base client ID + instance identifier)
     private String uniqueClientId;
     
     // Shared MQTT client instance - all endpoints will use this to ensure single connection
     private volatile MqttClient sharedMqttClient;
+
+    // Leader election state, only set when leader election is enabled
+    private volatile LeaderElection leaderElection;
+
+    // Whether discovery was published since this instance last became leader, only used with leader election
+    private volatile boolean discoveryPublishedAsLeader = false;
+
+    // Single thread running on-demand refreshes outside of the MQTT callback thread
+    private final java.util.concurrent.ExecutorService refreshExecutor = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "workouttracker-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Fetch-and-publish cycles of the workouts and statistics routes, from their timers or on demand
+    private final RefreshScheduler refreshScheduler = new RefreshScheduler(refreshExecutor,
+        () -> runCycle(FETCH_WORKOUTS_ENDPOINT), () -> runCycle(FETCH_STATISTICS_ENDPOINT));
+
+    private volatile ProducerTemplate cycleTemplate;
     
     // Cache of topic-specific endpoints - all share the same MQTT client for connection reuse
     // Using ConcurrentHashMap for thread-safe access
@@ -102,6 +183,57 @@ public class WorkoutRoute extends RouteBuilder {
     // Track if we've logged connection status
     private volatile boolean baseMqttConnectedLogged = false;
 
+    // Last good payloads per MQTT topic, republished while the REST API is unavailable (stale-while-revalidate)
+    private final java.util.concurrent.ConcurrentHashMap<String, String> lastGoodWorkoutPayloads = new java.util.concurrent.ConcurrentHashMap<>();
+    private final java.util.concurrent.ConcurrentHashMap<String, String> lastGoodStatisticsPayloads = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile long lastGoodWorkoutsAt = 0;
+    private volatile long lastGoodStatisticsAt = 0;
+
+    // Threads running REST API calls, so the calling thread can give up once the request deadline is exceeded
+    private final java.util.concurrent.ExecutorService fetchExecutor = java.util.concurrent.Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "workouttracker-fetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Cache of HTTP producers and in-flight REST API calls, keyed by endpoint URI
+    private final java.util.concurrent.ConcurrentHashMap<String, Producer> httpProducerCache = new java.util.concurrent.ConcurrentHashMap<>();
+    private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.Future<?>> inFlightFetches = new java.util.concurrent.ConcurrentHashMap<>();
+
+    // Bounded pool used to fan out per-type processing when parallel processing is enabled
+    private volatile java.util.concurrent.ForkJoinPool typeProcessingPool;
+
+    /**
+     * Work performed for a single workout type
+     */
+    @FunctionalInterface
+    interface TypeTask {
+        void process(String workoutType) throws Exception;
+    }
+
+    /**
+     * Reads a REST API response body
+     */
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream in) throws Exception;
+    }
+
+    /**
+     * Latest workout of a type, serialized without data.details, and its derived analytics (may be null)
+     */
+    private record LatestWorkout(String workoutJson, String analyticsJson) {
+    }
+
+    // Per-type statistics, maintained incrementally across ticks
+    // Totals, month and year from the monthly buckets of the statistics endpoint
+    private final java.util.concurrent.ConcurrentHashMap<String, RollingStatistics> rollingStatistics = new java.util.concurrent.ConcurrentHashMap<>();
+    // Week and last 30 days need day granularity, they are built from the dates of the workouts list
+    private final java.util.concurrent.ConcurrentHashMap<String, RollingStatistics> dailyStatistics = new java.util.concurrent.ConcurrentHashMap<>();
+
+    // Per-type analytics, each keeping its own reusable buffers and last analyzed workout
+    private final java.util.concurrent.ConcurrentHashMap<String, WorkoutAnalytics> workoutAnalytics = new java.util.concurrent.ConcurrentHashMap<>();
+
     /**
      * Capitalizes the first letter of a string
      */
@@ -160,12 +292,44 @@ public class WorkoutRoute extends RouteBuilder {
             // Configure connection options
             MqttConnectOptions connOpts = new MqttConnectOptions();
             connOpts.setCleanSession(true);
+            // Parallel per-type publishes from both routes may be in flight at the same time
+            connOpts.setMaxInflight(Math.max(MqttConnectOptions.MAX_INFLIGHT_DEFAULT, processingParallelism * 2));
             if (mqttBrokerUsername != null && !mqttBrokerUsername.isEmpty()) {
                 connOpts.setUserName(mqttBrokerUsername);
             }
             if (mqttBrokerPassword != null && !mqttBrokerPassword.isEmpty()) {
                 connOpts.setPassword(mqttBrokerPassword.toCharArray());
             }
+            if (leaderElectionEnabled) {
+                // The last will releases our lease if we disconnect ungracefully
+                leaderElection = new LeaderElection(MQTT_LEADER_TOPIC, uniqueClientId, leaderLeaseTtl);
+                leaderElection.configureWill(connOpts);
+            }
+            
+            // (Re)subscribe to the command topic on every connection, as clean sessions drop subscriptions
+            if (refreshCommandEnabled) {
+                MqttClient client = sharedMqttClient;
+                client.setCallback(new MqttCallbackExtended() {
+                    @Override
+                    public void connectComplete(boolean reconnect, String serverURI) {
+                        refreshExecutor.execute(() -> subscribeRefreshCommand(client));
+                    }
+
+                    @Override
+                    public void connectionLost(Throwable cause) {
+                        log.warn("MQTT connection lost: " + (cause != null ? cause.getMessage() : "unknown cause"));
+                    }
+
+                    @Override
+                    public void messageArrived(String topic, MqttMessage message) {
+                        // Messages are delivered to the per-subscription listeners
+                    }
+
+                    @Override
+                    public void deliveryComplete(IMqttDeliveryToken token) {
+                    }
+                });
+            }
             
             // Connect the shared client
             sharedMqttClient.connect(connOpts);
@@ -183,6 +347,58 @@ public class WorkoutRoute extends RouteBuilder {
         }
     }
     
+    /**
+     * Subscribes to the refresh command topic, triggering an immediate fetch-and-publish cycle on each message
+     */
+    private void subscribeRefreshCommand(MqttClient client) {
+        try {
+            client.subscribe(MQTT_REFRESH_COMMAND_TOPIC, 1, (topic, message) -> refreshScheduler.requestRefresh());
+            log.info("Listening for refresh commands on MQTT topic: " + MQTT_REFRESH_COMMAND_TOPIC);
+        } catch (Exception e) {
+            log.warn("Failed to subscribe to refresh command topic '" + MQTT_REFRESH_COMMAND_TOPIC + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a fetch-and-publish cycle of a route, scheduled by {@link #refreshScheduler}
+     * 
+     * @param endpoint Endpoint of the route
+     */
+    private void runCycle(String endpoint) {
+        ProducerTemplate template = cycleTemplate;
+        if (template == null) {
+            synchronized (this) {
+                if (cycleTemplate == null) {
+                    cycleTemplate = getContext().createProducerTemplate();
+                }
+                template = cycleTemplate;
+            }
+        }
+        template.sendBody(endpoint, null);
+    }
+
+    /**
+     * Checks whether this instance should poll the REST API and publish to MQTT.
+     * Always true when leader election is disabled.
+     */
+    private boolean isLeader() {
+        if (!leaderElectionEnabled) {
+            return true;
+        }
+        LeaderElection election = leaderElection;
+        return election != null && election.isLeader();
+    }
+
+    /**
+     * Releases the leader lease on shutdown so that a standby instance takes over immediately
+     */
+    void releaseLeadership(@Observes @Priority(Interceptor.Priority.PLATFORM_BEFORE) ShutdownEvent event) {
+        LeaderElection election = leaderElection;
+        if (election != null) {
+            election.release(sharedMqttClient);
+        }
+    }
+    
     /**
      * Gets or creates the endpoint and producer for a specific topic
      * All endpoints use the shared MQTT client, ensuring a single connection
@@ -230,7 +446,7 @@ public class WorkoutRoute extends RouteBuilder {
      * @param maxRetryDelay Maximum delay between retries in milliseconds (default: 30000)
      * @param initialRetryDelay Initial delay between retries in milliseconds (default: 1000)
      */
-    private void publishToMqttWithRetry(String topic, String message, String description, long maxRetryDelay, long initialRetryDelay) {
+    void publishToMqttWithRetry(String topic, String message, String description, long maxRetryDelay, long initialRetryDelay) {
         initializeMqttEndpoints();
         
         long retryDelay = initialRetryDelay;
@@ -239,6 +455,8 @@ public class WorkoutRoute extends RouteBuilder {
         
         while (!success) {
             attemptCount++;
+            WorkoutEvents.PublishEvent publishEvent = new WorkoutEvents.PublishEvent();
+            publishEvent.begin();
             try {
                 // Ensure client ID is initialized
                 if (uniqueClientId == null) {
@@ -258,6 +476,7 @@ public class WorkoutRoute extends RouteBuilder {
                 exchange.getIn().setBody(message);
                 log.debug("Publishing to MQTT topic: '" + topic + "' using topic-specific producer");
                 topicProducer.process(exchange);
+                commitPublishEvent(publishEvent, topic, message, attemptCount, true);
                 log.debug("Successfully published message to topic: '" + topic + "'");
                 
                 // Log connection status on first successful publish
@@ -277,6 +496,8 @@ public class WorkoutRoute extends RouteBuilder {
                 }
                 success = true;
             } catch (Exception e) {
+                commitPublishEvent(publishEvent, topic, message, attemptCount, false);
+                
                 // Get the root cause for better error reporting
                 Throwable cause = e.getCause() != null ? e.getCause() : e;
                 String errorMessage = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
@@ -303,12 +524,22 @@ public class WorkoutRoute extends RouteBuilder {
                 }
                 
                 // Wait before retrying
+                WorkoutEvents.RetrySleepEvent sleepEvent = new WorkoutEvents.RetrySleepEvent();
+                sleepEvent.begin();
                 try {
                     Thread.sleep(retryDelay);
                 } catch (InterruptedException ie) {
                     Thread.currentThread().interrupt();
                     log.error("Interrupted while waiting to retry MQTT connection");
                     throw new RuntimeException("MQTT retry interrupted", ie);
+                } finally {
+                    sleepEvent.end();
+                    if (sleepEvent.shouldCommit()) {
+                        sleepEvent.topic = topic;
+                        sleepEvent.attempt = attemptCount;
+                        sleepEvent.retryDelay = retryDelay;
+                        sleepEvent.commit();
+                    }
                 }
                 
                 // Exponential backoff with maximum delay
@@ -317,6 +548,55 @@ public class WorkoutRoute extends RouteBuilder {
         }
     }
 
+    /**
+     * Commits a JFR event for a single MQTT publish attempt
+     */
+    private void commitPublishEvent(WorkoutEvents.PublishEvent event, String topic, String message, int attempt, boolean success) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.payloadSize = message != null ? message.getBytes(StandardCharsets.UTF_8).length : 0;
+            event.attempt = attempt;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts the JFR event timing a REST API call. Must be paired with {@link #commitFetchEvent(Exchange)}.
+     */
+    private void beginFetchEvent(Exchange exchange, String url) {
+        WorkoutEvents.FetchEvent event = new WorkoutEvents.FetchEvent();
+        event.url = url;
+        event.begin();
+        exchange.setProperty(FETCH_EVENT_PROPERTY, event);
+    }
+
+    /**
+     * Commits the JFR event timing a REST API call with the response status and size
+     */
+    private void commitFetchEvent(Exchange exchange) {
+        WorkoutEvents.FetchEvent event = exchange.getProperty(FETCH_EVENT_PROPERTY, WorkoutEvents.FetchEvent.class);
+        if (event == null) {
+            return;
+        }
+        exchange.removeProperty(FETCH_EVENT_PROPERTY);
+        event.end();
+        if (event.shouldCommit()) {
+            Integer statusCode = exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+            event.statusCode = statusCode != null ? statusCode : 0;
+            // Large responses are chunked, without a Content-Length: the cached body gives their actual size
+            Object body = exchange.getIn().getBody();
+            Long contentLength = exchange.getIn().getHeader("Content-Length", Long.class);
+            if (body instanceof StreamCache) {
+                event.responseSize = ((StreamCache) body).length();
+            } else if (contentLength != null && contentLength >= 0) {
+                event.responseSize = contentLength;
+            }
+            event.commit();
+        }
+    }
+
     /**
      * Publishes Home Assistant MQTT discovery configuration for a sensor
      * Uses retry logic to ensure the message is published even if MQTT broker is temporarily unavailable
@@ -328,7 +608,7 @@ public class WorkoutRoute extends RouteBuilder {
         }
         
         try {
-            ObjectMapper mapper = new ObjectMapper();
+            ObjectMapper mapper = MAPPER;
             ObjectNode config = mapper.createObjectNode();
             
             // Basic sensor configuration
@@ -347,6 +627,10 @@ public class WorkoutRoute extends RouteBuilder {
             if (valueTemplate != null && !valueTemplate.isEmpty()) {
                 config.put("value_template", valueTemplate);
             }
+            // Stale data: mark the sensor unavailable once it stops being refreshed
+            // The staleness metadata is exposed once per type by a dedicated sensor, not as attributes of every sensor:
+            // 'fetchedAt' changes on every tick, so attributes would record a state change per sensor and per poll
+            config.put("expire_after", discoveryExpireAfter());
             
             // Device information
             ObjectNode device = mapper.createObjectNode();
@@ -476,6 +760,500 @@ public class WorkoutRoute extends RouteBuilder {
         }
     }
 
+    /**
+     * Runs a task for each selected workout type. When parallel processing is enabled, tasks are
+     * fanned out on a bounded fork-join pool and joined before returning, so per-type selection,
+     * aggregation and blocking MQTT publishes overlap instead of adding up.
+     * 
+     * @param types Workout types to process
+     * @param task Work to perform for each type
+     * @throws Exception The first failure raised by a task, once all tasks have completed
+     */
+    void forEachType(Set<String> types, TypeTask task) throws Exception {
+        if (!parallelProcessing || types.size() < 2) {
+            for (String workoutType : types) {
+                task.process(workoutType);
+            }
+            return;
+        }
+        
+        java.util.concurrent.ForkJoinPool pool = typeProcessingPool;
+        if (pool == null) {
+            synchronized (this) {
+                if (typeProcessingPool == null) {
+                    typeProcessingPool = new java.util.concurrent.ForkJoinPool(Math.max(1, processingParallelism));
+                    log.info("Parallel per-type processing enabled (parallelism: " + typeProcessingPool.getParallelism() + ")");
+                }
+                pool = typeProcessingPool;
+            }
+        }
+        
+        java.util.List<java.util.concurrent.ForkJoinTask<Void>> tasks = new java.util.ArrayList<>(types.size());
+        for (String workoutType : types) {
+            tasks.add(pool.submit(() -> {
+                task.process(workoutType);
+                return null;
+            }));
+        }
+        
+        // Join all tasks so that no work is left running when the exchange completes
+        Exception failure = null;
+        for (java.util.concurrent.ForkJoinTask<Void> pending : tasks) {
+            try {
+                pending.get();
+            } catch (java.util.concurrent.ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stream-parses a REST API response body without first buffering it as a String.
+     * Camel stream caching keeps bodies up to the spool threshold in memory and spills larger ones
+     * to a temporary file, from which they are parsed. The cached body is reset before reading,
+     * so that it can be read several times.
+     * 
+     * @param exchange Exchange holding the HTTP response
+     * @param route Route name (for logging and profiling)
+     * @param reader Reader parsing the body
+     * @return The parsed response
+     */
+    private <T> T parseResponseBody(Exchange exchange, String route, BodyReader<T> reader) throws Exception {
+        return parseResponseBody(exchange, route, reader, null);
+    }
+
+    /**
+     * @param describe Adds the details of the parsed response to the recorded parse event, or null
+     * @see #parseResponseBody(Exchange, String, BodyReader)
+     */
+    private <T> T parseResponseBody(Exchange exchange, String route, BodyReader<T> reader,
+                                    java.util.function.BiConsumer<WorkoutEvents.ParseEvent, T> describe) throws Exception {
+        Object body = exchange.getIn().getBody();
+        long payloadSize = body instanceof StreamCache ? ((StreamCache) body).length() : -1;
+        if (body instanceof StreamCache) {
+            ((StreamCache) body).reset();
+        }
+        
+        WorkoutEvents.ParseEvent parseEvent = new WorkoutEvents.ParseEvent();
+        parseEvent.begin();
+        T response = null;
+        // Failed parses are recorded too, they are the ticks most worth profiling
+        try (InputStream in = exchange.getIn().getBody(InputStream.class)) {
+            if (in == null) {
+                throw new RuntimeException("Empty " + route + " response");
+            }
+            response = reader.read(in);
+        } finally {
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.route = route;
+                parseEvent.payloadSize = payloadSize;
+                if (describe != null && response != null) {
+                    describe.accept(parseEvent, response);
+                }
+                parseEvent.commit();
+            }
+        }
+        
+        log.debug("Parsed " + route + " API response (" + payloadSize + " bytes" + 
+            (body instanceof StreamCache && !((StreamCache) body).inMemory() ? ", spooled to disk" : "") + ")");
+        return response;
+    }
+
+    /**
+     * Logs a failed REST API call with its status code and the length of its response body.
+     * The body itself is not logged: it can be a large spooled response, which would be read back
+     * into memory as a String just to be logged.
+     */
+    private void logFetchFailure(Exchange exchange, String description) {
+        Integer statusCode = exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        Object body = exchange.getIn().getBody();
+        String bodyLength;
+        if (body == null) {
+            bodyLength = "empty";
+        } else if (body instanceof StreamCache) {
+            bodyLength = ((StreamCache) body).length() + " bytes";
+        } else {
+            bodyLength = "unknown length";
+        }
+        log.info("Failed to fetch " + description + ". Status: " + statusCode + ", Body: " + bodyLength);
+    }
+
+    /**
+     * Logs a warning when the resident set size of the process exceeds the configured steady-state target.
+     * Reads VmRSS from /proc, so it only works on Linux.
+     */
+    private void checkResidentSetSize(long targetMb) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    long rssMb = Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+                    if (rssMb > targetMb) {
+                        log.warn("Resident set size is " + rssMb + " MB, above the steady-state target of " + targetMb + " MB");
+                    } else {
+                        log.debug("Resident set size is " + rssMb + " MB (target: " + targetMb + " MB)");
+                    }
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Unable to read resident set size: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the HTTP endpoint options enforcing connect and read deadlines on REST API calls.
+     * Without them a hung workout-tracker instance would block the timer thread indefinitely.
+     */
+    private String httpTimeoutOptions() {
+        return "&connectTimeout=" + apiConnectTimeout +
+            "&connectionRequestTimeout=" + apiConnectTimeout +
+            "&responseTimeout=" + apiReadTimeout +
+            "&soTimeout=" + apiReadTimeout;
+    }
+
+    /**
+     * Calls a REST API endpoint with a total deadline on the whole request, including the download of the body.
+     * The connect and read timeouts only bound the wait for each socket operation, so a server sending its
+     * response slowly could otherwise keep the calling thread busy indefinitely. The call runs on a copy of
+     * the exchange; on success its response is copied back, on failure or timeout the exchange is left
+     * without a response code so that the cached payloads are served instead.
+     *
+     * @param exchange Exchange holding the request headers, receives the response
+     * @param uri HTTP endpoint URI
+     * @param description Description of the request (for logging)
+     */
+    private void fetchWithDeadline(Exchange exchange, String uri, String description) throws Exception {
+        // A request abandoned after its deadline is still running, do not pile up new ones behind it
+        java.util.concurrent.Future<?> previous = inFlightFetches.get(uri);
+        if (previous != null && !previous.isDone()) {
+            log.warn(capitalize(description) + " request skipped, the previous request is still running after exceeding its deadline");
+            return;
+        }
+
+        Producer producer = httpProducerCache.computeIfAbsent(uri, u -> {
+            try {
+                Producer p = getContext().getEndpoint(u).createProducer();
+                p.start();
+                return p;
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to create HTTP producer", e);
+            }
+        });
+
+        Exchange request = exchange.copy();
+        java.util.concurrent.Future<?> call = fetchExecutor.submit(() -> {
+            producer.process(request);
+            return null;
+        });
+        inFlightFetches.put(uri, call);
+        try {
+            call.get(apiRequestTimeout, java.util.concurrent.TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.TimeoutException e) {
+            // Interrupts the request; until it actually completes, new requests to this endpoint are skipped
+            call.cancel(true);
+            log.warn(capitalize(description) + " request exceeded its deadline of " + apiRequestTimeout + "ms, cancelled");
+            return;
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.warn(capitalize(description) + " request failed: " + cause.getMessage());
+            return;
+        }
+        if (request.getException() != null) {
+            log.warn(capitalize(description) + " request failed: " + request.getException().getMessage());
+            return;
+        }
+        exchange.getIn().setHeaders(request.getMessage().getHeaders());
+        Object body = request.getMessage().getBody();
+        exchange.getIn().setBody(body);
+        if (body != null && !(body instanceof StreamCache)) {
+            // The workouts body is read twice (scan, then analytics), a stream of the HTTP connection can only be read once
+            try {
+                StreamCache cached = exchange.getContext().getStreamCachingStrategy().cache(exchange);
+                if (cached != null) {
+                    exchange.getIn().setBody(cached);
+                } else {
+                    log.warn(capitalize(description) + " response body (" + body.getClass().getName() + ") could not be cached, it can only be read once");
+                }
+            } catch (Exception e) {
+                log.warn("Failed to cache " + description + " response body, it can only be read once: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds the staleness metadata to a JSON payload, so that consumers can tell fresh data from data
+     * republished from cache while the REST API is unavailable
+     *
+     * @param json JSON object payload
+     * @param fetchedAt Time the data was fetched from the REST API, or null to keep the one already in the payload
+     * @param stale Whether the payload is republished from cache
+     * @return The payload with its 'fetchedAt' and 'stale' fields set, or the unchanged payload if it is not a JSON object
+     */
+    private String withFreshness(String json, String fetchedAt, boolean stale) {
+        try {
+            JsonNode node = MAPPER.readTree(json);
+            if (!node.isObject()) {
+                return json;
+            }
+            if (fetchedAt != null) {
+                ((ObjectNode) node).put("fetchedAt", fetchedAt);
+            }
+            ((ObjectNode) node).put("stale", stale);
+            return MAPPER.writeValueAsString(node);
+        } catch (Exception e) {
+            log.debug("Unable to add staleness metadata to payload: " + e.getMessage());
+            return json;
+        }
+    }
+
+    /**
+     * Republishes the last good payloads of a route, flagged as stale, while the REST API is degraded
+     * (stale-while-revalidate). Payloads older than the configured max age are not served anymore, and
+     * Home Assistant then marks the sensors unavailable once their 'expire_after' delay elapses.
+     *
+     * @param cache Last good payloads keyed by MQTT topic
+     * @param cachedAt Time (epoch millis) the payloads were fetched
+     * @param description Description of what is being published (for logging)
+     */
+    private void publishStalePayloads(Map<String, String> cache, long cachedAt, String description) {
+        if (cache.isEmpty()) {
+            log.warn("No cached " + description + " available, skipping MQTT publish");
+            return;
+        }
+        long age = System.currentTimeMillis() - cachedAt;
+        if (age > apiStaleMaxAge) {
+            log.warn("Cached " + description + " are too old (" + age + "ms > " + apiStaleMaxAge + "ms), skipping MQTT publish");
+            return;
+        }
+        log.info("Publishing cached " + description + " (age: " + age + "ms) while REST API is unavailable");
+        for (Map.Entry<String, String> entry : cache.entrySet()) {
+            publishToMqttWithRetry(entry.getKey(), withFreshness(entry.getValue(), null, true), "cached " + description, 30000, 1000);
+        }
+    }
+
+    /**
+     * @return Delay (seconds) after which Home Assistant marks a sensor unavailable when no message is received.
+     * Sensors are refreshed on every tick, including from cache, until the cached data exceeds its max age.
+     */
+    private long discoveryExpireAfter() {
+        return Math.max(60, timerPeriod * 3 / 1000);
+    }
+
+    /**
+     * Stream-parses the workouts list, finding the latest workout of each selected type and updating
+     * the per-day statistics of the selected types, one bucket per workout
+     * 
+     * @param exchange Exchange holding the HTTP response
+     * @param types Selected workout types
+     * @return The latest workouts, without their data.details
+     */
+    private WorkoutsResponseParser.Scan scanWorkouts(Exchange exchange, Set<String> types) throws Exception {
+        LocalDate today = LocalDate.now();
+        Map<String, RollingStatistics> selected = new java.util.HashMap<>();
+        for (String workoutType : types) {
+            RollingStatistics daily = dailyStatistics.computeIfAbsent(workoutType.toLowerCase(),
+                t -> new RollingStatistics(RollingStatistics.Window.WEEK, RollingStatistics.Window.LAST_30_DAYS));
+            daily.begin(today);
+            selected.put(workoutType.toLowerCase(), daily);
+        }
+        
+        WorkoutsResponseParser.Scan scan = parseResponseBody(exchange, "workouts",
+            in -> WorkoutsResponseParser.scan(MAPPER, in, selected.keySet(), (workoutType, workout) -> addDailyWorkout(selected.get(workoutType), workout)),
+            (event, result) -> {
+                event.workoutCount = result.workoutCount();
+                event.selectedTypeCount = result.latest().size();
+            });
+        
+        // Workouts missing from a complete response (e.g. deleted workouts) are removed from the per-day statistics
+        selected.values().forEach(RollingStatistics::end);
+        return scan;
+    }
+
+    /**
+     * Adds a workout to the per-day statistics of its type, keyed by its ID
+     */
+    private static void addDailyWorkout(RollingStatistics daily, JsonNode workout) {
+        String date = workout.path("date").asText("");
+        String key = workout.hasNonNull("id") ? workout.get("id").asText() : date;
+        daily.put(key, RollingStatistics.parseEpochDay(date), workout.path("data").path("totalDistance").asDouble(0.0), 1);
+    }
+
+    /**
+     * Computes the derived analytics of the latest workouts, only once per workout ID and type.
+     * The points of the workouts not analyzed yet are streamed from a second read of the cached response.
+     * 
+     * @param exchange Exchange holding the HTTP response
+     * @param latest Latest workouts, keyed by lowercase type
+     * @return The analytics JSON of the latest workouts having usable details, keyed by lowercase type
+     */
+    private Map<String, String> analyzeLatestWorkouts(Exchange exchange, Map<String, WorkoutsResponseParser.Latest> latest) throws Exception {
+        Map<String, String> analyticsByType = new java.util.HashMap<>();
+        if (!analyticsEnabled) {
+            return analyticsByType;
+        }
+        
+        Map<Integer, WorkoutsResponseParser.PointsConsumer> consumers = new java.util.HashMap<>();
+        for (Map.Entry<String, WorkoutsResponseParser.Latest> entry : latest.entrySet()) {
+            String workoutType = entry.getKey();
+            WorkoutsResponseParser.Latest workout = entry.getValue();
+            WorkoutAnalytics analytics = workoutAnalytics.computeIfAbsent(workoutType, t -> new WorkoutAnalytics());
+            if (analytics.isAnalyzed(workout.id())) {
+                analyticsByType.put(workoutType, analytics.getAnalytics(workout.id()));
+            } else if (!workout.hasDetails()) {
+                log.debug("No details available yet for " + workoutType + " workout (ID: " + workout.id() + ")");
+            } else {
+                consumers.put(workout.index(), points -> {
+                    String analyticsJson = analyzeWorkout(analytics, points, workout.id(), workoutType);
+                    if (analyticsJson != null) {
+                        analyticsByType.put(workoutType, analyticsJson);
+                    }
+                });
+            }
+        }
+        if (consumers.isEmpty()) {
+            return analyticsByType;
+        }
+        
+        Object body = exchange.getIn().getBody();
+        if (body instanceof InputStream && !(body instanceof StreamCache)) {
+            log.warn("Workouts response is not cached, it cannot be read again for analytics");
+            return analyticsByType;
+        }
+        parseResponseBody(exchange, "workout details", in -> {
+            WorkoutsResponseParser.readPoints(MAPPER, in, consumers);
+            return null;
+        });
+        return analyticsByType;
+    }
+
+    /**
+     * Computes the derived analytics of a workout from its points
+     * 
+     * @param points Parser positioned on the start of the data.details.points array
+     * @return The analytics JSON, or null if the workout has no usable details
+     */
+    private String analyzeWorkout(WorkoutAnalytics analytics, JsonParser points, long workoutId, String workoutType) throws java.io.IOException {
+        WorkoutEvents.AnalyticsEvent analyticsEvent = new WorkoutEvents.AnalyticsEvent();
+        analyticsEvent.begin();
+        String analyticsJson = analytics.analyze(MAPPER, workoutId, points);
+        analyticsEvent.end();
+        if (analyticsEvent.shouldCommit()) {
+            analyticsEvent.workoutType = workoutType;
+            analyticsEvent.workoutId = workoutId;
+            analyticsEvent.pointCount = analytics.getPointCount();
+            analyticsEvent.commit();
+        }
+        if (analyticsJson == null) {
+            log.debug("No analytics available for " + workoutType + " workout (ID: " + workoutId + ")");
+        }
+        return analyticsJson;
+    }
+
+    /**
+     * Serializes the latest workout of a type, already read without its data.details
+     * 
+     * @param mapper Object mapper used to serialize the workout
+     * @param latest Latest workout of this type, or null if no workout of this type was found
+     * @param workoutType Workout type
+     * @param fetchedAt Time the workouts were fetched from the REST API
+     * @param analyticsJson Analytics of the workout, or null if not available
+     * @return The latest workout, or null if no workout of this type was found
+     */
+    private LatestWorkout serializeLatestWorkout(ObjectMapper mapper, WorkoutsResponseParser.Latest latest, String workoutType,
+                                                 String fetchedAt, String analyticsJson) throws Exception {
+        if (latest == null) {
+            log.debug("No workouts found for type: " + workoutType);
+            return null;
+        }
+        
+        WorkoutEvents.SerializeEvent serializeEvent = new WorkoutEvents.SerializeEvent();
+        serializeEvent.begin();
+        ObjectNode workout = latest.workout();
+        workout.put("fetchedAt", fetchedAt);
+        workout.put("stale", false);
+        String workoutJson = mapper.writeValueAsString(workout);
+        serializeEvent.end();
+        if (serializeEvent.shouldCommit()) {
+            serializeEvent.workoutType = workoutType;
+            serializeEvent.payloadSize = workoutJson.getBytes(StandardCharsets.UTF_8).length;
+            serializeEvent.commit();
+        }
+        log.debug("Found latest " + workoutType + " workout (ID: " + latest.id() + ")");
+        return new LatestWorkout(workoutJson, analyticsJson != null ? withFreshness(analyticsJson, fetchedAt, false) : null);
+    }
+
+    /**
+     * Aggregates the statistics buckets of a type and publishes them to MQTT
+     * 
+     * @param mapper Object mapper used to serialize the statistics
+     * @param buckets The 'results.buckets' object of the statistics response
+     * @param workoutType Workout type to aggregate
+     * @param fetchedAt Time the statistics were fetched from the REST API
+     */
+    private void publishTypeStatistics(ObjectMapper mapper, JsonNode buckets, String workoutType, String fetchedAt) throws Exception {
+        String typeLower = workoutType.toLowerCase();
+        
+        // Check if this workout type exists in the buckets
+        if (!buckets.has(typeLower)) {
+            log.warn("No statistics found for workout type: " + workoutType);
+            return;
+        }
+        
+        JsonNode typeBucket = buckets.get(typeLower);
+        JsonNode typeBuckets = typeBucket.has("buckets") ? typeBucket.get("buckets") : null;
+        
+        if (typeBuckets == null || !typeBuckets.isObject()) {
+            log.warn("No monthly buckets found for workout type: " + workoutType);
+            return;
+        }
+        
+        // Aggregate: all-time and rolling window totals, updated incrementally from the buckets that changed
+        // The buckets object has date keys (e.g., "2022-08-04", "2022-09-13")
+        WorkoutEvents.AggregateEvent aggregateEvent = new WorkoutEvents.AggregateEvent();
+        aggregateEvent.begin();
+        RollingStatistics statistics = rollingStatistics.computeIfAbsent(typeLower,
+            t -> new RollingStatistics(RollingStatistics.Window.MONTH, RollingStatistics.Window.YEAR));
+        LocalDate today = LocalDate.now();
+        int changedBuckets = statistics.update(typeBuckets, today);
+        
+        // Create aggregated JSON object
+        ObjectNode aggregatedStats = mapper.createObjectNode();
+        aggregatedStats.put("workoutType", workoutType);
+        statistics.writeTotalsTo(aggregatedStats);
+        statistics.writeWindowsTo(aggregatedStats, today);
+        RollingStatistics daily = dailyStatistics.get(typeLower);
+        if (daily != null) {
+            daily.writeWindowsTo(aggregatedStats, today);
+        }
+        aggregatedStats.put("fetchedAt", fetchedAt);
+        aggregatedStats.put("stale", false);
+        aggregateEvent.end();
+        if (aggregateEvent.shouldCommit()) {
+            aggregateEvent.workoutType = workoutType;
+            aggregateEvent.bucketCount = typeBuckets.size();
+            aggregateEvent.changedBuckets = changedBuckets;
+            aggregateEvent.commit();
+        }
+        double totalDistance = aggregatedStats.get("totalDistance").asDouble();
+        int totalWorkouts = aggregatedStats.get("totalWorkouts").asInt();
+        
+        String aggregatedJson = mapper.writeValueAsString(aggregatedStats);
+        
+        // Send to MQTT with type-specific topic
+        String typeTopic = MQTT_STATISTICS_TOPIC + "/" + typeLower;
+        lastGoodStatisticsPayloads.put(typeTopic, aggregatedJson);
+        log.info("Publishing statistics to MQTT topic: " + typeTopic + " (type: " + workoutType + ", workouts: " + totalWorkouts + ", distance: " + 
+            String.format("%.2f", totalDistance / 1000) + " km)");
+        log.debug("Home Assistant will extract value_json.totalWorkouts = " + totalWorkouts + " from JSON: " + aggregatedJson);
+        publishToMqttWithRetry(typeTopic, aggregatedJson, workoutType + " statistics", 30000, 1000);
+    }
+
     @Override
     public void configure() throws Exception {
         // Global exception handler for errors (must be defined before any routes)
@@ -486,6 +1264,7 @@ public class WorkoutRoute extends RouteBuilder {
 
         // Build the workouts list API URL
         String workoutsListUrl = restApiServerUrl + restApiEndpoint;
+        String workoutsHttpUri = workoutsListUrl + "?bridgeEndpoint=true&throwExceptionOnFailure=false" + httpTimeoutOptions();
         
         // Parse workout types from configuration
         Set<String> selectedTypes = Arrays.stream(workoutTypes.split(","))
@@ -497,115 +1276,266 @@ public class WorkoutRoute extends RouteBuilder {
         log.info("MQTT topics configured - Base: " + MQTT_BASE_TOPIC + ", Workouts: " + MQTT_WORKOUTS_TOPIC + "/<activity>, Statistics: " + MQTT_STATISTICS_TOPIC + "/<activity>");
         log.info("Monitoring workout types: " + String.join(", ", selectedTypes));
         
+        // Publishes the Home Assistant discovery messages, once on startup or, with leader election, each time this instance becomes leader
+        org.apache.camel.Processor publishDiscovery = exchange -> {
+            log.info("Publishing Home Assistant MQTT discovery configurations...");
+            // Discovery for each workout type
+            for (String workoutType : selectedTypes) {
+                String typeTopic = MQTT_WORKOUTS_TOPIC + "/" + workoutType.toLowerCase();
+                String typeId = workoutType.toLowerCase().replaceAll("[^a-z0-9]", "_");
+                log.info("Publishing Home Assistant discovery for workout type: " + workoutType + " (topic: " + typeTopic + ")");
+                
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    typeId + "_distance",
+                    "Latest " + capitalize(workoutType) + " Distance",
+                    "km",
+                    "{{ value_json.data.totalDistance | default(0) / 1000 }}",
+                    typeTopic,
+                    "distance",
+                    null
+                );
+                
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    typeId + "_duration",
+                    "Latest " + capitalize(workoutType) + " Duration",
+                    "min",
+                    "{{ value_json.data.totalDuration | default(0) / 1000000000 / 60 }}",
+                    typeTopic,
+                    "duration",
+                    null
+                );
+                
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    typeId + "_name",
+                    "Latest " + capitalize(workoutType) + " Name",
+                    "",
+                    "{{ value_json.name | default('Unknown') }}",
+                    typeTopic,
+                    null,
+                    null
+                );
+                
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    typeId + "_date",
+                    "Latest " + capitalize(workoutType) + " Date",
+                    "",
+                    "{{ value_json.date | default('') }}",
+                    typeTopic,
+                    "timestamp",
+                    null
+                );
+                
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    typeId + "_average_speed",
+                    "Latest " + capitalize(workoutType) + " Average Speed",
+                    "km/h",
+                    "{{ value_json.data.averageSpeed | default(0) * 3.6 }}",
+                    typeTopic,
+                    "speed",
+                    "measurement"
+                );
+                
+                // Freshness of the workout data, only changes when the REST API becomes unavailable or recovers
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    typeId + "_data",
+                    "Latest " + capitalize(workoutType) + " Data",
+                    "",
+                    "{{ 'stale' if value_json.stale | default(false) else 'fresh' }}",
+                    typeTopic,
+                    null,
+                    null
+                );
+                
+                if (analyticsEnabled) {
+                    String analyticsTopic = typeTopic + "/analytics";
+                    
+                    publishHomeAssistantDiscovery(
+                        exchange,
+                        typeId + "_best_1km",
+                        "Latest " + capitalize(workoutType) + " Best 1 km",
+                        "min",
+                        "{{ value_json.best1km | default(0) / 60 }}",
+                        analyticsTopic,
+                        "duration",
+                        null
+                    );
+                    
+                    publishHomeAssistantDiscovery(
+                        exchange,
+                        typeId + "_best_5km",
+                        "Latest " + capitalize(workoutType) + " Best 5 km",
+                        "min",
+                        "{{ value_json.best5km | default(0) / 60 }}",
+                        analyticsTopic,
+                        "duration",
+                        null
+                    );
+                    
+                    publishHomeAssistantDiscovery(
+                        exchange,
+                        typeId + "_pace_variability",
+                        "Latest " + capitalize(workoutType) + " Pace Variability",
+                        "%",
+                        "{{ value_json.paceVariability | default(0) }}",
+                        analyticsTopic,
+                        null,
+                        "measurement"
+                    );
+                    
+                    publishHomeAssistantDiscovery(
+                        exchange,
+                        typeId + "_elevation_gain",
+                        "Latest " + capitalize(workoutType) + " Elevation Gain",
+                        "m",
+                        "{{ value_json.elevationGain | default(0) }}",
+                        analyticsTopic,
+                        "distance",
+                        null
+                    );
+                }
+            }
+            
+            // Discovery for statistics data (total distance and workouts by type)
+            for (String workoutType : selectedTypes) {
+                String typeId = workoutType.toLowerCase().replaceAll("[^a-z0-9]", "_");
+                String statisticsTopic = MQTT_STATISTICS_TOPIC + "/" + workoutType.toLowerCase();
+                log.info("Publishing Home Assistant discovery for statistics type: " + workoutType + " (topic: " + statisticsTopic + ")");
+                
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    "statistics_" + typeId + "_total_distance",
+                    capitalize(workoutType) + " Total Distance",
+                    "km",
+                    "{{ value_json.totalDistance | default(0) / 1000 }}",
+                    statisticsTopic,
+                    "distance",
+                    "total"
+                );
+                
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    "statistics_" + typeId + "_total_workouts",
+                    capitalize(workoutType) + " Total Workouts",
+                    "",
+                    "{{ value_json.totalWorkouts | default(0) | int }}",
+                    statisticsTopic,
+                    null,  // No device_class for count sensors
+                    "total_increasing"  // Enable graphing for counter
+                );
+                
+                // Freshness of the statistics, only changes when the REST API becomes unavailable or recovers
+                publishHomeAssistantDiscovery(
+                    exchange,
+                    "statistics_" + typeId + "_data",
+                    capitalize(workoutType) + " Statistics Data",
+                    "",
+                    "{{ 'stale' if value_json.stale | default(false) else 'fresh' }}",
+                    statisticsTopic,
+                    null,
+                    null
+                );
+                
+                // Rolling window totals, one distance and one workouts sensor per window
+                // {JSON field prefix, sensor ID, sensor name}
+                String[][] windows = {
+                    {"week", "week", "Week"},
+                    {"month", "month", "Month"},
+                    {"year", "year", "Year"},
+                    {"last30Days", "last_30_days", "Last 30 Days"}
+                };
+                for (String[] window : windows) {
+                    publishHomeAssistantDiscovery(
+                        exchange,
+                        "statistics_" + typeId + "_" + window[1] + "_distance",
+                        capitalize(workoutType) + " " + window[2] + " Distance",
+                        "km",
+                        "{{ value_json." + window[0] + "Distance | default(0) / 1000 }}",
+                        statisticsTopic,
+                        "distance",
+                        "measurement"
+                    );
+                    
+                    publishHomeAssistantDiscovery(
+                        exchange,
+                        "statistics_" + typeId + "_" + window[1] + "_workouts",
+                        capitalize(workoutType) + " " + window[2] + " Workouts",
+                        "",
+                        "{{ value_json." + window[0] + "Workouts | default(0) | int }}",
+                        statisticsTopic,
+                        null,  // No device_class for count sensors
+                        "measurement"
+                    );
+                }
+                log.debug("Discovery template for " + workoutType + " total workouts: {{ value_json.totalWorkouts | int | default(0) }}, state_topic: " + statisticsTopic);
+            }
+            
+            log.info("Home Assistant discovery configurations published");
+        };
+
         // Route to publish Home Assistant discovery messages on startup (runs once after context is ready)
-        if (haDiscoveryEnabled) {
+        // With leader election, standby instances must not publish: the leader-election route publishes it instead
+        if (haDiscoveryEnabled && !leaderElectionEnabled) {
             from("timer:ha-discovery?repeatCount=1&delay=5000")
-                .log("Publishing Home Assistant MQTT discovery configurations...")
+                .process(publishDiscovery);
+        }
+
+        // Leader election route: renews or claims the lease on the broker so that only one instance polls and publishes
+        if (leaderElectionEnabled) {
+            log.info("Leader election enabled (lease topic: " + MQTT_LEADER_TOPIC + ", lease TTL: " + leaderLeaseTtl + "ms)");
+            fromF("timer:leader-election?period=%d&delay=%d", LeaderElection.renewInterval(leaderLeaseTtl), timerDelay)
                 .process(exchange -> {
-                    // Discovery for each workout type
-                    for (String workoutType : selectedTypes) {
-                        String typeTopic = MQTT_WORKOUTS_TOPIC + "/" + workoutType.toLowerCase();
-                        String typeId = workoutType.toLowerCase().replaceAll("[^a-z0-9]", "_");
-                        log.info("Publishing Home Assistant discovery for workout type: " + workoutType + " (topic: " + typeTopic + ")");
-                        
-                        publishHomeAssistantDiscovery(
-                            exchange,
-                            typeId + "_distance",
-                            "Latest " + capitalize(workoutType) + " Distance",
-                            "km",
-                            "{{ value_json.data.totalDistance | default(0) / 1000 }}",
-                            typeTopic,
-                            "distance",
-                            null
-                        );
-                        
-                        publishHomeAssistantDiscovery(
-                            exchange,
-                            typeId + "_duration",
-                            "Latest " + capitalize(workoutType) + " Duration",
-                            "min",
-                            "{{ value_json.data.totalDuration | default(0) / 1000000000 / 60 }}",
-                            typeTopic,
-                            "duration",
-                            null
-                        );
-                        
-                        publishHomeAssistantDiscovery(
-                            exchange,
-                            typeId + "_name",
-                            "Latest " + capitalize(workoutType) + " Name",
-                            "",
-                            "{{ value_json.name | default('Unknown') }}",
-                            typeTopic,
-                            null,
-                            null
-                        );
-                        
-                        publishHomeAssistantDiscovery(
-                            exchange,
-                            typeId + "_date",
-                            "Latest " + capitalize(workoutType) + " Date",
-                            "",
-                            "{{ value_json.date | default('') }}",
-                            typeTopic,
-                            "timestamp",
-                            null
-                        );
-                        
-                        publishHomeAssistantDiscovery(
-                            exchange,
-                            typeId + "_average_speed",
-                            "Latest " + capitalize(workoutType) + " Average Speed",
-                            "km/h",
-                            "{{ value_json.data.averageSpeed | default(0) * 3.6 }}",
-                            typeTopic,
-                            "speed",
-                            "measurement"
-                        );
+                    initializeMqttEndpoints();
+                    LeaderElection election = leaderElection;
+                    if (election != null) {
+                        election.heartbeat(sharedMqttClient);
                     }
-                    
-                    // Discovery for statistics data (total distance and workouts by type)
-                    for (String workoutType : selectedTypes) {
-                        String typeId = workoutType.toLowerCase().replaceAll("[^a-z0-9]", "_");
-                        String statisticsTopic = MQTT_STATISTICS_TOPIC + "/" + workoutType.toLowerCase();
-                        log.info("Publishing Home Assistant discovery for statistics type: " + workoutType + " (topic: " + statisticsTopic + ")");
-                        
-                        publishHomeAssistantDiscovery(
-                            exchange,
-                            "statistics_" + typeId + "_total_distance",
-                            capitalize(workoutType) + " Total Distance",
-                            "km",
-                            "{{ value_json.totalDistance | default(0) / 1000 }}",
-                            statisticsTopic,
-                            "distance",
-                            "total"
-                        );
-                        
-                        publishHomeAssistantDiscovery(
-                            exchange,
-                            "statistics_" + typeId + "_total_workouts",
-                            capitalize(workoutType) + " Total Workouts",
-                            "",
-                            "{{ value_json.totalWorkouts | default(0) | int }}",
-                            statisticsTopic,
-                            null,  // No device_class for count sensors
-                            "total_increasing"  // Enable graphing for counter
-                        );
-                        log.debug("Discovery template for " + workoutType + " total workouts: {{ value_json.totalWorkouts | int | default(0) }}, state_topic: " + statisticsTopic);
+                    if (!isLeader()) {
+                        discoveryPublishedAsLeader = false;
+                    } else if (haDiscoveryEnabled && !discoveryPublishedAsLeader) {
+                        publishDiscovery.process(exchange);
+                        discoveryPublishedAsLeader = true;
                     }
-                    
-                    log.info("Home Assistant discovery configurations published");
                 });
         }
 
-        // Timer-based route that triggers every X milliseconds
+        // Memory check route: warns when the resident set size exceeds the documented steady-state target
+        if (rssTargetMb.isPresent()) {
+            long targetMb = rssTargetMb.get();
+            log.info("Resident set size target: " + targetMb + " MB");
+            fromF("timer:memory-check?period=%d&delay=%d", timerPeriod, timerDelay + 20000)
+                .process(exchange -> checkResidentSetSize(targetMb));
+        }
+
+        // Timer-based routes that trigger every X milliseconds, on-demand refreshes use the same endpoints
+        // Ticks are skipped while a cycle of the same route is running, e.g. an on-demand refresh
         fromF("timer:workout-timer?period=%d&delay=%d", timerPeriod, timerDelay)
+            .process(exchange -> refreshScheduler.tickWorkouts());
+        
+        fromF("timer:statistics-timer?period=%d&delay=%d", timerPeriod, timerDelay + 10000)
+            .process(exchange -> refreshScheduler.tickStatistics());
+
+        // First route: Fetch workouts from /api/v1/workouts endpoint and publish the latest workout by type
+        from(FETCH_WORKOUTS_ENDPOINT)
+            // Standby instances leave polling and publishing to the leader
+            .filter(exchange -> !isLeader())
+                .log(LoggingLevel.DEBUG, "Standby instance, skipping workouts fetch")
+                .stop()
+            .end()
             .log("Fetching workouts from REST API: " + workoutsListUrl)
             // Set the API key header
             .setHeader(apiKeyHeaderName, constant(restApiKey))
             .setHeader(Exchange.HTTP_METHOD, constant("GET"))
             // Step 1: Fetch all workouts (limit=1 doesn't work, so we fetch all and filter)
-            .toF("%s?bridgeEndpoint=true&throwExceptionOnFailure=false", workoutsListUrl)
+            // Connection failures and deadline overruns are caught so the cached workouts can be served instead
+            .process(exchange -> beginFetchEvent(exchange, workoutsListUrl))
+            .process(exchange -> fetchWithDeadline(exchange, workoutsHttpUri, "workouts"))
+            .process(this::commitFetchEvent)
             // .log("Received workouts response: ${body}")
             // Check if first API call was successful
             .choice()
@@ -616,129 +1546,95 @@ public class WorkoutRoute extends RouteBuilder {
                     .log("Workouts list retrieved successfully")
                     // Step 2: Filter workouts by type and find the latest workout for each selected type
                     .process(exchange -> {
-                        String body = exchange.getIn().getBody(String.class);
-                        ObjectMapper mapper = new ObjectMapper();
-                        JsonNode response = mapper.readTree(body);
-                        
-                        log.debug("Full API response: " + body);
-                        
-                        // The API response structure is typically: { "results": [...] }
-                        JsonNode workoutsArray = null;
-                        if (response.has("results")) {
-                            workoutsArray = response.get("results");
-                            log.debug("Found 'results' field in response");
-                        } else if (response.isArray()) {
-                            workoutsArray = response;
-                            log.debug("Response is directly an array");
-                        } else {
-                            // Try to find any array field
-                            response.fieldNames().forEachRemaining(fieldName -> {
-                                JsonNode field = response.get(fieldName);
-                                if (field.isArray()) {
-                                    log.debug("Found array field: " + fieldName);
-                                }
-                            });
-                            throw new RuntimeException("Unexpected response format. Response keys: " + 
-                                response.fieldNames().toString() + ". Full response: " + body);
-                        }
-                        
-                        // Check if we have at least one workout
-                        if (workoutsArray == null || workoutsArray.size() == 0) {
-                            throw new RuntimeException("No workouts found in response. Full response: " + body);
-                        }
-                        
-                        // Store latest workouts by type in exchange properties
-                        for (String workoutType : selectedTypes) {
-                            JsonNode latestWorkoutForType = null;
-                            long latestId = 0;
-                            String latestDate = "";
+                        // Unparsable responses are handled like failed requests: the cached workouts are served instead
+                        try {
+                            ObjectMapper mapper = MAPPER;
+                            String fetchedAt = java.time.Instant.now().toString();
+                            // The API response structure is typically: { "results": [...] }
+                            // It is stream-parsed, so that the data.details of all workouts are never held in memory
+                            WorkoutsResponseParser.Scan scan = scanWorkouts(exchange, selectedTypes);
                             
-                            // Find the latest workout of this type
-                            for (int i = 0; i < workoutsArray.size(); i++) {
-                                JsonNode workout = workoutsArray.get(i);
-                                
-                                // Check if workout matches the type (case-insensitive)
-                                String workoutTypeValue = workout.has("type") ? workout.get("type").asText() : "";
-                                if (!workoutTypeValue.equalsIgnoreCase(workoutType)) {
-                                    continue;
-                                }
-                                
-                                long workoutId = workout.has("id") ? workout.get("id").asLong() : 0;
-                                String workoutDate = workout.has("date") ? workout.get("date").asText() : "";
-                                
-                                // Check if this is the latest workout for this type
-                                boolean isNewer = false;
-                                if (latestWorkoutForType == null) {
-                                    isNewer = true;
-                                } else if (workoutId > latestId) {
-                                    isNewer = true;
-                                } else if (workoutId == latestId && !workoutDate.isEmpty() && !latestDate.isEmpty()) {
-                                    if (workoutDate.compareTo(latestDate) > 0) {
-                                        isNewer = true;
-                                    }
-                                } else if (!workoutDate.isEmpty() && latestDate.isEmpty()) {
-                                    isNewer = true;
-                                }
-                                
-                                if (isNewer) {
-                                    latestWorkoutForType = workout;
-                                    latestId = workoutId;
-                                    latestDate = workoutDate;
-                                }
+                            // Check if we have at least one workout
+                            if (scan.workoutCount() == 0) {
+                                throw new RuntimeException("No workouts found in response");
                             }
+                            log.debug("Found " + scan.workoutCount() + " workouts in response");
                             
-                            // Process and store the latest workout for this type
-                            if (latestWorkoutForType != null) {
-                                // Remove data.details from the workout before sending
-                                String workoutJsonString = mapper.writeValueAsString(latestWorkoutForType);
-                                ObjectNode workoutCopy = (ObjectNode) mapper.readTree(workoutJsonString);
-                                
-                                if (workoutCopy.has("data")) {
-                                    JsonNode dataNode = workoutCopy.get("data");
-                                    if (dataNode.isObject() && dataNode.has("details")) {
-                                        ObjectNode dataObject = (ObjectNode) dataNode;
-                                        dataObject.remove("details");
-                                    }
+                            // Analytics need data.details, they are streamed from the response for new latest workouts only
+                            Map<String, String> analyticsByType = analyzeLatestWorkouts(exchange, scan.latest());
+                            
+                            // Store latest workouts by type in exchange properties
+                            Map<String, LatestWorkout> latestWorkouts = new java.util.concurrent.ConcurrentHashMap<>();
+                            forEachType(selectedTypes, workoutType -> {
+                                String typeLower = workoutType.toLowerCase();
+                                LatestWorkout latestWorkout = serializeLatestWorkout(mapper, scan.latest().get(typeLower), workoutType,
+                                    fetchedAt, analyticsByType.get(typeLower));
+                                if (latestWorkout != null) {
+                                    latestWorkouts.put(typeLower, latestWorkout);
                                 }
-                                
-                                String workoutJson = mapper.writeValueAsString(workoutCopy);
-                                exchange.setProperty("latest_workout_" + workoutType.toLowerCase(), workoutJson);
-                                log.debug("Found latest " + workoutType + " workout (ID: " + latestId + ")");
-                            } else {
-                                log.debug("No workouts found for type: " + workoutType);
-                            }
+                            });
+                            latestWorkouts.forEach((type, latestWorkout) -> {
+                                exchange.setProperty("latest_workout_" + type, latestWorkout.workoutJson());
+                                if (latestWorkout.analyticsJson() != null) {
+                                    exchange.setProperty("latest_workout_analytics_" + type, latestWorkout.analyticsJson());
+                                }
+                            });
+                            
+                            // Set body to indicate processing is complete
+                            exchange.getIn().setBody("processed");
+                        } catch (Exception e) {
+                            log.warn("Unable to process workouts response: " + e.getMessage() + ", serving cached workouts instead");
+                            publishStalePayloads(lastGoodWorkoutPayloads, lastGoodWorkoutsAt, "workouts");
+                            exchange.setRouteStop(true);
                         }
-                        
-                        // Set body to indicate processing is complete
-                        exchange.getIn().setBody("processed");
                     })
                     // Step 3: Send latest workout for each type to MQTT (with retry logic)
                     .process(exchange -> {
-                        for (String workoutType : selectedTypes) {
+                        lastGoodWorkoutsAt = System.currentTimeMillis();
+                        forEachType(selectedTypes, workoutType -> {
                             String workoutJson = exchange.getProperty("latest_workout_" + workoutType.toLowerCase(), String.class);
                             if (workoutJson != null) {
                                 String typeTopic = MQTT_WORKOUTS_TOPIC + "/" + workoutType.toLowerCase();
+                                lastGoodWorkoutPayloads.put(typeTopic, workoutJson);
                                 log.info("Publishing workout to MQTT topic: " + typeTopic + " (type: " + workoutType + ")");
                                 publishToMqttWithRetry(typeTopic, workoutJson, "latest " + workoutType + " workout", 30000, 1000);
+                                
+                                String analyticsJson = exchange.getProperty("latest_workout_analytics_" + workoutType.toLowerCase(), String.class);
+                                if (analyticsJson != null) {
+                                    String analyticsTopic = typeTopic + "/analytics";
+                                    lastGoodWorkoutPayloads.put(analyticsTopic, analyticsJson);
+                                    publishToMqttWithRetry(analyticsTopic, analyticsJson, "latest " + workoutType + " workout analytics", 30000, 1000);
+                                }
                             } else {
                                 log.debug("No workout found for type: " + workoutType + ", skipping MQTT publish");
                             }
-                        }
+                        });
                     })
                 .otherwise()
-                    .log("Failed to fetch workouts list. Status: ${header.CamelHttpResponseCode}, Body: ${body}")
+                    .process(exchange -> logFetchFailure(exchange, "workouts list"))
+                    // Keep Home Assistant fed from the last good workouts while the API is degraded
+                    .process(exchange -> publishStalePayloads(lastGoodWorkoutPayloads, lastGoodWorkoutsAt, "workouts"))
             .endChoice();
 
         // Second route: Fetch statistics from /api/v1/statistics endpoint and aggregate by workout type
         String statisticsUrl = restApiServerUrl + restApiStatisticsEndpoint;
+        String statisticsHttpUri = statisticsUrl + "?bridgeEndpoint=true&throwExceptionOnFailure=false" + httpTimeoutOptions();
         
-        fromF("timer:statistics-timer?period=%d&delay=%d", timerPeriod, timerDelay + 10000)
+        from(FETCH_STATISTICS_ENDPOINT)
+            // Standby instances leave polling and publishing to the leader
+            .filter(exchange -> !isLeader())
+                .log(LoggingLevel.DEBUG, "Standby instance, skipping statistics fetch")
+                .stop()
+            .end()
             .log("Fetching statistics from REST API: " + statisticsUrl)
             // Set the API key header
             .setHeader(apiKeyHeaderName, constant(restApiKey))
             .setHeader(Exchange.HTTP_METHOD, constant("GET"))
             // Fetch statistics from API
-            .toF("%s?bridgeEndpoint=true&throwExceptionOnFailure=false", statisticsUrl)
+            // Connection failures and deadline overruns are caught so the cached statistics can be served instead
+            .process(exchange -> beginFetchEvent(exchange, statisticsUrl))
+            .process(exchange -> fetchWithDeadline(exchange, statisticsHttpUri, "statistics"))
+            .process(this::commitFetchEvent)
             .log("Received statistics response")
             // Check if API call was successful
             .choice()
@@ -749,77 +1645,36 @@ public class WorkoutRoute extends RouteBuilder {
                     .log("Statistics retrieved successfully, processing and sending to MQTT")
                     // Process statistics: aggregate total distance and workouts by type
                     .process(exchange -> {
-                        String body = exchange.getIn().getBody(String.class);
-                        ObjectMapper mapper = new ObjectMapper();
-                        JsonNode response = mapper.readTree(body);
-                        
-                        log.debug("Full statistics API response: " + body);
-                        
-                        // The API response structure is: { "results": { "buckets": { "running": { "buckets": { "2020-06-14": {...}, ... } }, "cycling": { "buckets": { "2022-08-04": {...}, ... } } } } }
-                        // Note: The inner "buckets" is an object with date keys, not an array
-                        JsonNode results = response.has("results") ? response.get("results") : response;
-                        JsonNode buckets = results.has("buckets") ? results.get("buckets") : null;
-                        
-                        if (buckets == null || !buckets.isObject()) {
-                            throw new RuntimeException("Unexpected statistics response format. Expected 'results.buckets' object.");
-                        }
-                        
-                        // Process each workout type that we're interested in
-                        for (String workoutType : selectedTypes) {
-                            String typeLower = workoutType.toLowerCase();
-                            
-                            // Check if this workout type exists in the buckets
-                            if (!buckets.has(typeLower)) {
-                                log.warn("No statistics found for workout type: " + workoutType);
-                                continue;
-                            }
+                        ObjectMapper mapper = MAPPER;
+                        String fetchedAt = java.time.Instant.now().toString();
+                        JsonNode buckets;
+                        // Unparsable responses are handled like failed requests: the cached statistics are served instead
+                        try {
+                            JsonNode response = parseResponseBody(exchange, "statistics", MAPPER::readTree);
                             
-                            JsonNode typeBucket = buckets.get(typeLower);
-                            JsonNode typeBuckets = typeBucket.has("buckets") ? typeBucket.get("buckets") : null;
+                            // The API response structure is: { "results": { "buckets": { "running": { "buckets": { "2020-06-14": {...}, ... } }, "cycling": { "buckets": { "2022-08-04": {...}, ... } } } } }
+                            // Note: The inner "buckets" is an object with date keys, not an array
+                            JsonNode results = response.has("results") ? response.get("results") : response;
+                            buckets = results.has("buckets") ? results.get("buckets") : null;
                             
-                            if (typeBuckets == null || !typeBuckets.isObject()) {
-                                log.warn("No monthly buckets found for workout type: " + workoutType);
-                                continue;
+                            if (buckets == null || !buckets.isObject()) {
+                                throw new RuntimeException("Unexpected statistics response format. Expected 'results.buckets' object.");
                             }
-                            
-                            // Aggregate: sum distance and workouts across all months
-                            // The buckets object has date keys (e.g., "2022-08-04", "2022-09-13")
-                            double totalDistance = 0.0;
-                            int totalWorkouts = 0;
-                            
-                            // Iterate over the object fields (date keys)
-                            java.util.Iterator<String> dateKeys = typeBuckets.fieldNames();
-                            while (dateKeys.hasNext()) {
-                                String dateKey = dateKeys.next();
-                                JsonNode monthBucket = typeBuckets.get(dateKey);
-                                
-                                if (monthBucket.has("distance")) {
-                                    totalDistance += monthBucket.get("distance").asDouble(0.0);
-                                }
-                                
-                                if (monthBucket.has("workouts")) {
-                                    totalWorkouts += monthBucket.get("workouts").asInt(0);
-                                }
-                            }
-                            
-                            // Create aggregated JSON object
-                            ObjectNode aggregatedStats = mapper.createObjectNode();
-                            aggregatedStats.put("workoutType", workoutType);
-                            aggregatedStats.put("totalDistance", totalDistance);
-                            aggregatedStats.put("totalWorkouts", totalWorkouts);
-                            
-                            String aggregatedJson = mapper.writeValueAsString(aggregatedStats);
-                            
-                            // Send to MQTT with type-specific topic
-                            String typeTopic = MQTT_STATISTICS_TOPIC + "/" + typeLower;
-                            log.info("Publishing statistics to MQTT topic: " + typeTopic + " (type: " + workoutType + ", workouts: " + totalWorkouts + ", distance: " + 
-                                String.format("%.2f", totalDistance / 1000) + " km)");
-                            log.debug("Home Assistant will extract value_json.totalWorkouts = " + totalWorkouts + " from JSON: " + aggregatedJson);
-                            publishToMqttWithRetry(typeTopic, aggregatedJson, workoutType + " statistics", 30000, 1000);
+                        } catch (Exception e) {
+                            log.warn("Unable to process statistics response: " + e.getMessage() + ", serving cached statistics instead");
+                            publishStalePayloads(lastGoodStatisticsPayloads, lastGoodStatisticsAt, "statistics");
+                            return;
                         }
+                        
+                        lastGoodStatisticsAt = System.currentTimeMillis();
+                        
+                        // Process each workout type that we're interested in
+                        forEachType(selectedTypes, workoutType -> publishTypeStatistics(mapper, buckets, workoutType, fetchedAt));
                     })
                 .otherwise()
-                    .log("Failed to fetch statistics. Status: ${header.CamelHttpResponseCode}, Body: ${body}")
+                    .process(exchange -> logFetchFailure(exchange, "statistics"))
+                    // Keep Home Assistant fed from the last good statistics while the API is degraded
+                    .process(exchange -> publishStalePayloads(lastGoodStatisticsPayloads, lastGoodStatisticsAt, "statistics"))
             .endChoice();
     }
 }
@@ -0,0 +1,244 @@
+package com.slallemand.workouttracker2mqtt;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming parser of the workouts list response, which never builds the whole response as a tree.
+ *
+ * The response is read in two passes over the cached body. The first pass builds each workout in turn
+ * without its data.details, the bulk of the response, and keeps only the latest workout of each selected
+ * type. The second pass, only needed when a new latest workout has to be analyzed, goes back to those
+ * workouts by position and hands their data.details.points array to a consumer reading it token by token.
+ * Memory use is then bounded by one workout without details, not by the size of the response.
+ */
+final class WorkoutsResponseParser {
+
+    /**
+     * Latest workout of a type found by {@link #scan}
+     *
+     * @param workout The workout, without data.details
+     * @param id Workout ID, or 0 if missing
+     * @param date Workout date, or an empty string if missing
+     * @param index Position of the workout in the workouts array
+     * @param hasDetails Whether the workout has data.details in the response
+     */
+    record Latest(ObjectNode workout, long id, String date, int index, boolean hasDetails) {
+    }
+
+    /**
+     * Result of {@link #scan}
+     *
+     * @param latest Latest workout of each selected type, keyed by the lowercase type
+     * @param workoutCount Number of workouts in the response, of any type
+     */
+    record Scan(Map<String, Latest> latest, int workoutCount) {
+    }
+
+    /**
+     * Receives each workout of a selected type, without its data.details
+     */
+    @FunctionalInterface
+    interface WorkoutListener {
+        void onWorkout(String workoutType, ObjectNode workout);
+    }
+
+    /**
+     * Reads the data.details.points array of a workout
+     */
+    @FunctionalInterface
+    interface PointsConsumer {
+        /**
+         * @param points Parser positioned on the start of the points array, to be left on its end
+         */
+        void accept(JsonParser points) throws IOException;
+    }
+
+    private WorkoutsResponseParser() {
+    }
+
+    /**
+     * First pass: finds the latest workout of each selected type
+     *
+     * @param mapper Object mapper used to build the workouts
+     * @param in Response body
+     * @param types Selected workout types, lowercase
+     * @param listener Receives each workout of a selected type
+     * @return The latest workouts and the number of workouts
+     */
+    static Scan scan(ObjectMapper mapper, InputStream in, Set<String> types, WorkoutListener listener) throws IOException {
+        Map<String, Latest> latest = new HashMap<>();
+        int index = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            openWorkoutsArray(parser);
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token == null) {
+                    throw new IOException("Unexpected end of workouts response");
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    index++;
+                    continue;
+                }
+
+                ObjectNode workout = mapper.createObjectNode();
+                boolean hasDetails = readWorkout(mapper, parser, workout);
+                String workoutType = workout.path("type").asText("").toLowerCase();
+                if (types.contains(workoutType)) {
+                    listener.onWorkout(workoutType, workout);
+
+                    long workoutId = workout.path("id").asLong(0);
+                    String workoutDate = workout.path("date").asText("");
+                    Latest current = latest.get(workoutType);
+                    if (current == null || isNewer(workoutId, workoutDate, current)) {
+                        latest.put(workoutType, new Latest(workout, workoutId, workoutDate, index, hasDetails));
+                    }
+                }
+                index++;
+            }
+        }
+        return new Scan(latest, index);
+    }
+
+    /**
+     * Second pass: streams the data.details.points array of some workouts to their consumers.
+     * Reading stops as soon as all of them were found.
+     *
+     * @param mapper Object mapper used to create the parser
+     * @param in Response body
+     * @param consumers Points consumers, keyed by the position of their workout in the workouts array
+     */
+    static void readPoints(ObjectMapper mapper, InputStream in, Map<Integer, PointsConsumer> consumers) throws IOException {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        int remaining = consumers.size();
+        int index = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            openWorkoutsArray(parser);
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token == null) {
+                    throw new IOException("Unexpected end of workouts response");
+                }
+                PointsConsumer consumer = consumers.get(index++);
+                if (consumer == null || token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                readWorkoutPoints(parser, consumer);
+                if (--remaining == 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the parser to the start of the workouts array: the 'results' field of the response, or the
+     * response itself if it is an array
+     */
+    private static void openWorkoutsArray(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected response format, expected a JSON object or array");
+        }
+        List<String> responseKeys = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("results")) {
+                if (value != JsonToken.START_ARRAY) {
+                    throw new IOException("Unexpected response format, 'results' is not an array");
+                }
+                return;
+            }
+            responseKeys.add(field);
+            parser.skipChildren();
+        }
+        throw new IOException("Unexpected response format. Response keys: " + responseKeys);
+    }
+
+    /**
+     * Reads a workout object, skipping its data.details
+     *
+     * @return true if the workout has data.details
+     */
+    private static boolean readWorkout(ObjectMapper mapper, JsonParser parser, ObjectNode workout) throws IOException {
+        boolean hasDetails = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!field.equals("data") || value != JsonToken.START_OBJECT) {
+                workout.set(field, mapper.readTree(parser));
+                continue;
+            }
+            ObjectNode data = workout.putObject("data");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String dataField = parser.currentName();
+                JsonToken dataValue = parser.nextToken();
+                if (dataField.equals("details")) {
+                    hasDetails = dataValue != JsonToken.VALUE_NULL;
+                    parser.skipChildren();
+                } else {
+                    data.set(dataField, mapper.readTree(parser));
+                }
+            }
+        }
+        return hasDetails;
+    }
+
+    /**
+     * Finds data.details.points in a workout object and hands it to a consumer, skipping everything else
+     */
+    private static void readWorkoutPoints(JsonParser parser, PointsConsumer consumer) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT || !field.equals("data")) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String dataField = parser.currentName();
+                if (parser.nextToken() != JsonToken.START_OBJECT || !dataField.equals("details")) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String detailsField = parser.currentName();
+                    if (parser.nextToken() == JsonToken.START_ARRAY && detailsField.equals("points")) {
+                        consumer.accept(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if a workout is newer than the current latest workout of its type: a higher ID,
+     * or the same ID with a later date
+     */
+    private static boolean isNewer(long workoutId, String workoutDate, Latest current) {
+        if (workoutId > current.id()) {
+            return true;
+        } else if (workoutId == current.id() && !workoutDate.isEmpty() && !current.date().isEmpty()) {
+            return workoutDate.compareTo(current.date()) > 0;
+        } else {
+            return !workoutDate.isEmpty() && current.date().isEmpty();
+        }
+    }
+}
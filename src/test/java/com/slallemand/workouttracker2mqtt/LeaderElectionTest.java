@@ -0,0 +1,236 @@
+package com.slallemand.workouttracker2mqtt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderElectionTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String TOPIC = "workouttracker/leader";
+    private static final String RELEASE_TOPIC = TOPIC + "/release";
+    private static final long TTL = 30000;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    void claimsFreeLeaseOnceSubscribed() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+
+        // The first heartbeat subscribes and waits for the retained lease
+        election.heartbeat(broker);
+        assertEquals(List.of(TOPIC, RELEASE_TOPIC), new ArrayList<>(broker.listeners.keySet()));
+        assertFalse(election.isLeader());
+
+        election.heartbeat(broker);
+        assertTrue(election.isLeader());
+        JsonNode lease = MAPPER.readTree(broker.lastPublished(TOPIC));
+        assertEquals("instance-b", lease.get("owner").asText());
+        assertTrue(broker.retained.get(TOPIC));
+    }
+
+    @Test
+    void claimsLeaseOnlyAfterItExpires() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+        election.heartbeat(broker);
+        broker.deliver(TOPIC, lease("instance-a"));
+
+        election.heartbeat(broker);
+        assertFalse(election.isLeader());
+
+        clock.addAndGet(TTL - 1);
+        election.heartbeat(broker);
+        assertFalse(election.isLeader());
+        assertEquals(0, broker.publishCount(TOPIC));
+
+        clock.addAndGet(1);
+        election.heartbeat(broker);
+        assertTrue(election.isLeader());
+    }
+
+    @Test
+    void renewedLeaseIsMeasuredFromLocalReceiveTime() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+        election.heartbeat(broker);
+        broker.deliver(TOPIC, lease("instance-a"));
+
+        // Renewed just before expiry, with a remote clock far in the past
+        clock.addAndGet(TTL - 1000);
+        broker.deliver(TOPIC, "{\"owner\":\"instance-a\",\"renewedAt\":0,\"ttl\":30000}");
+        clock.addAndGet(2000);
+        election.heartbeat(broker);
+        assertFalse(election.isLeader());
+    }
+
+    @Test
+    void claimsLeaseAsSoonAsLeaderReleasesIt() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+        election.heartbeat(broker);
+        broker.deliver(TOPIC, lease("instance-a"));
+
+        // Last will of the leader, on the release topic
+        broker.deliver(RELEASE_TOPIC, released("instance-a"));
+        election.heartbeat(broker);
+        assertTrue(election.isLeader());
+    }
+
+    @Test
+    void ignoresReleaseOfAnInstanceNotHoldingTheLease() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+        election.heartbeat(broker);
+        broker.deliver(TOPIC, lease("instance-a"));
+
+        // Last will of a crashed standby
+        broker.deliver(RELEASE_TOPIC, released("instance-c"));
+        election.heartbeat(broker);
+        assertFalse(election.isLeader());
+    }
+
+    @Test
+    void releasesLeaseWhenLeader() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+        election.heartbeat(broker);
+        election.heartbeat(broker);
+        assertTrue(election.isLeader());
+
+        election.release(broker);
+        assertFalse(election.isLeader());
+        JsonNode release = MAPPER.readTree(broker.lastPublished(TOPIC));
+        assertEquals("instance-b", release.get("owner").asText());
+        assertTrue(release.get("released").asBoolean());
+
+        // A standby does not publish anything on release
+        FakeBroker standbyBroker = new FakeBroker();
+        LeaderElection standby = election("instance-c");
+        standby.release(standbyBroker);
+        assertEquals(0, standbyBroker.publishCount(TOPIC));
+    }
+
+    @Test
+    void lowestClientIdWinsConcurrentClaims() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+        election.heartbeat(broker);
+        election.heartbeat(broker);
+        assertTrue(election.isLeader());
+
+        // A concurrent claim from a higher client ID loses the tie-break
+        broker.deliver(TOPIC, lease("instance-c"));
+        assertTrue(election.isLeader());
+
+        // A concurrent claim from a lower client ID wins it
+        broker.deliver(TOPIC, lease("instance-a"));
+        assertFalse(election.isLeader());
+        election.heartbeat(broker);
+        assertFalse(election.isLeader());
+    }
+
+    @Test
+    void ignoresEchoOfItsOwnLease() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+        election.heartbeat(broker);
+        election.heartbeat(broker);
+
+        broker.deliver(TOPIC, broker.lastPublished(TOPIC));
+        assertTrue(election.isLeader());
+    }
+
+    @Test
+    void stepsDownAndResubscribesOnDisconnect() throws Exception {
+        FakeBroker broker = new FakeBroker();
+        LeaderElection election = election("instance-b");
+        election.heartbeat(broker);
+        election.heartbeat(broker);
+        assertTrue(election.isLeader());
+
+        broker.connected = false;
+        election.heartbeat(broker);
+        assertFalse(election.isLeader());
+        assertEquals(1, broker.reconnects);
+
+        // Once reconnected, the lease topics are subscribed again before claiming
+        broker.connected = true;
+        broker.listeners.clear();
+        election.heartbeat(broker);
+        assertFalse(election.isLeader());
+        assertEquals(2, broker.listeners.size());
+        election.heartbeat(broker);
+        assertTrue(election.isLeader());
+    }
+
+    private LeaderElection election(String clientId) {
+        return new LeaderElection(TOPIC, clientId, TTL, clock::get);
+    }
+
+    private static String lease(String owner) {
+        return "{\"owner\":\"" + owner + "\",\"renewedAt\":" + System.currentTimeMillis() + ",\"ttl\":" + TTL + "}";
+    }
+
+    private static String released(String owner) {
+        return "{\"owner\":\"" + owner + "\",\"released\":true}";
+    }
+
+    /**
+     * In-memory broker recording subscriptions and publishes, without echoing publishes to subscribers
+     */
+    private static final class FakeBroker implements LeaderElection.LeaseBroker {
+        boolean connected = true;
+        int reconnects = 0;
+        final Map<String, BiConsumer<String, byte[]>> listeners = new java.util.LinkedHashMap<>();
+        final Map<String, List<String>> published = new HashMap<>();
+        final Map<String, Boolean> retained = new HashMap<>();
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void reconnect() {
+            reconnects++;
+        }
+
+        @Override
+        public void subscribe(String topic, BiConsumer<String, byte[]> listener) {
+            listeners.put(topic, listener);
+        }
+
+        @Override
+        public void publish(String topic, byte[] payload, boolean retain) {
+            published.computeIfAbsent(topic, t -> new ArrayList<>()).add(new String(payload, StandardCharsets.UTF_8));
+            retained.put(topic, retain);
+        }
+
+        void deliver(String topic, String payload) {
+            listeners.get(topic).accept(topic, payload.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int publishCount(String topic) {
+            return published.getOrDefault(topic, List.of()).size();
+        }
+
+        String lastPublished(String topic) {
+            List<String> payloads = published.get(topic);
+            return payloads.get(payloads.size() - 1);
+        }
+    }
+}
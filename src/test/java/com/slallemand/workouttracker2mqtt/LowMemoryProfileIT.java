@@ -0,0 +1,139 @@
+package com.slallemand.workouttracker2mqtt;
+
+import io.quarkus.test.junit.QuarkusIntegrationTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Checks that the packaged application stays below its resident set size target under the lowmem profile,
+ * while polling a stub REST API returning large workout responses.
+ *
+ * This is an integration test rather than a {@code @QuarkusTest}: the resident set size is only meaningful
+ * for the application running in its own process, launched with the memory flags of the profile
+ * ({@code quarkus.test.arg-line}, set by the build), not inside the test JVM.
+ */
+@QuarkusIntegrationTest
+@TestProfile(LowMemoryProfileIT.LowMemoryTestProfile.class)
+@EnabledOnOs(OS.LINUX)
+class LowMemoryProfileIT {
+
+    // Set by the build: 192 MB for the JVM, 64 MB for the native executable
+    private static final long RSS_TARGET_MB = Long.getLong("memory.rss.target.mb", 192);
+    private static final long TIMER_PERIOD_MS = 2000;
+    private static final int WARM_UP_TICKS = 5;
+    private static final int MEASURED_TICKS = 5;
+
+    public static class LowMemoryTestProfile implements QuarkusTestProfile {
+        @Override
+        public String getConfigProfile() {
+            return "lowmem";
+        }
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "camel.route.timer.period", String.valueOf(TIMER_PERIOD_MS),
+                "camel.route.timer.delay", "1000",
+                "memory.rss.target.mb", String.valueOf(RSS_TARGET_MB),
+                "homeassistant.discovery.enabled", "false");
+        }
+
+        @Override
+        public List<TestResourceEntry> testResources() {
+            return List.of(new TestResourceEntry(StubWorkoutTrackerResource.class));
+        }
+    }
+
+    @Test
+    void residentSetSizeStaysBelowTargetWhilePolling() throws Exception {
+        awaitPublishedTicks(WARM_UP_TICKS);
+        long applicationPid = findApplicationPid();
+
+        long maxRssMb = 0;
+        int measuredUntil = StubWorkoutTrackerResource.publishCount("workouttracker/workouts/running") + MEASURED_TICKS;
+        while (StubWorkoutTrackerResource.publishCount("workouttracker/workouts/running") < measuredUntil) {
+            maxRssMb = Math.max(maxRssMb, readRssMb(applicationPid));
+            Thread.sleep(TIMER_PERIOD_MS / 4);
+            assertTrue(ProcessHandle.of(applicationPid).map(ProcessHandle::isAlive).orElse(false), "application exited");
+        }
+
+        // The analytics are computed from the points streamed from a second read of the cached response
+        assertTrue(StubWorkoutTrackerResource.publishCount("workouttracker/workouts/running/analytics") > 0,
+            "no analytics published for the latest running workouts");
+        assertTrue(maxRssMb <= RSS_TARGET_MB, "maximum resident set size over " + MEASURED_TICKS + " ticks is " + maxRssMb +
+            " MB, above the target of " + RSS_TARGET_MB + " MB");
+    }
+
+    /**
+     * Waits until the latest running workout was published for a number of ticks, each one parsing a large response
+     */
+    private static void awaitPublishedTicks(int ticks) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 120_000;
+        while (StubWorkoutTrackerResource.publishCount("workouttracker/workouts/running") < ticks) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("only " + StubWorkoutTrackerResource.publishCount("workouttracker/workouts/running") + " ticks published after " +
+                    StubWorkoutTrackerResource.workoutsRequests() + " workouts requests");
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    /**
+     * The launcher of {@code @QuarkusIntegrationTest} does not expose the application process, so it is looked up
+     * among the child processes of the test JVM: a JVM running quarkus-run.jar, or a native runner executable.
+     *
+     * @return PID of the application launched by the test
+     */
+    private static long findApplicationPid() {
+        List<ProcessHandle> applications = ProcessHandle.current().children()
+            .filter(process -> isApplication(readCommandLine(process.pid())))
+            .toList();
+        if (applications.size() != 1) {
+            fail("expected a single application process launched by the test, found " + applications.size() + ": " +
+                applications.stream().map(process -> process.pid() + " " + String.join(" ", readCommandLine(process.pid()))).toList());
+        }
+        return applications.get(0).pid();
+    }
+
+    private static boolean isApplication(List<String> commandLine) {
+        if (commandLine.isEmpty()) {
+            return false;
+        }
+        return commandLine.get(0).endsWith("-runner") ||
+            commandLine.stream().anyMatch(argument -> argument.endsWith("quarkus-app/quarkus-run.jar"));
+    }
+
+    /**
+     * @return Arguments of a process, empty if the process exited
+     */
+    private static List<String> readCommandLine(long pid) {
+        try {
+            String commandLine = new String(Files.readAllBytes(Path.of("/proc", String.valueOf(pid), "cmdline")), StandardCharsets.UTF_8);
+            return commandLine.isEmpty() ? List.of() : List.of(commandLine.split("\0"));
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    private static long readRssMb(long pid) throws IOException {
+        for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+            }
+        }
+        throw new IOException("VmRSS not found for process " + pid);
+    }
+}
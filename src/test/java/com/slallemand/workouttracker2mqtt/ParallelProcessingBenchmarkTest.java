@@ -0,0 +1,91 @@
+package com.slallemand.workouttracker2mqtt;
+
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the wall time of a tick publishing the workouts of several types sequentially and in parallel,
+ * through the shared MQTT client, to a stub broker acknowledging each publish after a delay like a slow broker.
+ *
+ * Wall-clock based, so it is excluded from the default test run: run it with {@code ./mvnw test -Pbenchmark}.
+ */
+@QuarkusTest
+@TestProfile(ParallelProcessingBenchmarkTest.BenchmarkProfile.class)
+@Tag("benchmark")
+class ParallelProcessingBenchmarkTest {
+
+    private static final int TYPE_COUNT = 8;
+    private static final int PARALLELISM = 4;
+    private static final long PUBLISH_LATENCY_MS = 100;
+    private static final int ROUNDS = 3;
+
+    public static class BenchmarkProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                // Publishes wait for the acknowledgement of the broker
+                "mqtt.broker.qos", "1",
+                "workout.processing.parallelism", String.valueOf(PARALLELISM),
+                // The polling routes stay idle during the benchmark
+                "camel.route.timer.delay", "3600000",
+                "homeassistant.discovery.enabled", "false",
+                "refresh.command.enabled", "false");
+        }
+
+        @Override
+        public List<TestResourceEntry> testResources() {
+            return List.of(new TestResourceEntry(StubWorkoutTrackerResource.class,
+                Map.of("publish.latency.ms", String.valueOf(PUBLISH_LATENCY_MS))));
+        }
+    }
+
+    @Inject
+    WorkoutRoute workoutRoute;
+
+    @Test
+    void parallelPublishingReducesTickLatency() throws Exception {
+        WorkoutRoute route = ClientProxy.unwrap(workoutRoute);
+        Set<String> types = new LinkedHashSet<>();
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            types.add("type" + i);
+        }
+
+        long sequentialMs = bestWallTimeMs(route, false, types);
+        long parallelMs = bestWallTimeMs(route, true, types);
+
+        // Ideal: TYPE_COUNT * latency sequentially, TYPE_COUNT / PARALLELISM * latency in parallel
+        assertTrue(parallelMs * 2 < sequentialMs, "publishing " + TYPE_COUNT + " types with a " + PUBLISH_LATENCY_MS + "ms broker: parallel " +
+            parallelMs + "ms is not at least twice as fast as sequential " + sequentialMs + "ms");
+    }
+
+    /**
+     * @return The best wall time (milliseconds) of a tick over several rounds, after a warm-up round
+     */
+    private static long bestWallTimeMs(WorkoutRoute route, boolean parallel, Set<String> types) throws Exception {
+        route.parallelProcessing = parallel;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            String payload = "{\"round\":" + round + "}";
+            long start = System.nanoTime();
+            route.forEachType(types, workoutType ->
+                route.publishToMqttWithRetry("workouttracker/benchmark/" + workoutType, payload, "benchmark " + workoutType, 1000, 100));
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (round > 0) {
+                best = Math.min(best, elapsedMs);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,93 @@
+package com.slallemand.workouttracker2mqtt;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RefreshSchedulerTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger workoutsCycles = new AtomicInteger();
+    private final AtomicInteger statisticsCycles = new AtomicInteger();
+
+    // The first workouts cycle signals that it started, then blocks until released
+    private final CountDownLatch firstCycleStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstCycle = new CountDownLatch(1);
+
+    private final RefreshScheduler scheduler = new RefreshScheduler(executor,
+        () -> {
+            if (workoutsCycles.incrementAndGet() == 1) {
+                firstCycleStarted.countDown();
+                releaseFirstCycle.await();
+            }
+        },
+        statisticsCycles::incrementAndGet);
+
+    @AfterEach
+    void shutdown() {
+        releaseFirstCycle.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void burstOfCommandsDuringRefreshRunsExactlyOneExtraCycle() throws Exception {
+        scheduler.requestRefresh();
+        assertTrue(firstCycleStarted.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            scheduler.requestRefresh();
+        }
+        releaseFirstCycle.countDown();
+        awaitRefreshes();
+
+        assertEquals(2, workoutsCycles.get());
+        assertEquals(2, statisticsCycles.get());
+    }
+
+    @Test
+    void commandAfterRefreshCompletedRunsAnotherRefresh() throws Exception {
+        releaseFirstCycle.countDown();
+        scheduler.requestRefresh();
+        assertTrue(firstCycleStarted.await(5, TimeUnit.SECONDS));
+        while (statisticsCycles.get() < 1) {
+            Thread.sleep(5);
+        }
+
+        scheduler.requestRefresh();
+        awaitRefreshes();
+
+        assertEquals(2, workoutsCycles.get());
+        assertEquals(2, statisticsCycles.get());
+    }
+
+    @Test
+    void timerTicksAreSkippedWhileRefreshHoldsThePermit() throws Exception {
+        scheduler.requestRefresh();
+        assertTrue(firstCycleStarted.await(5, TimeUnit.SECONDS));
+
+        assertFalse(scheduler.tickWorkouts());
+        assertEquals(1, workoutsCycles.get());
+        // The statistics route is not running, its ticks are not skipped
+        assertTrue(scheduler.tickStatistics());
+        assertEquals(1, statisticsCycles.get());
+
+        releaseFirstCycle.countDown();
+        awaitRefreshes();
+        assertTrue(scheduler.tickWorkouts());
+        assertEquals(2, workoutsCycles.get());
+    }
+
+    private void awaitRefreshes() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,213 @@
+package com.slallemand.workouttracker2mqtt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class RollingStatisticsTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void appliesChangedBucketValues() throws Exception {
+        RollingStatistics statistics = monthly();
+        LocalDate today = LocalDate.of(2024, 5, 20);
+
+        assertEquals(2, statistics.update(buckets("{\"2024-04-01\":{\"distance\":5000,\"workouts\":1},\"2024-05-01\":{\"distance\":1000,\"workouts\":1}}"), today));
+        assertEquals(0, statistics.update(buckets("{\"2024-04-01\":{\"distance\":5000,\"workouts\":1},\"2024-05-01\":{\"distance\":1000,\"workouts\":1}}"), today));
+        assertEquals(1, statistics.update(buckets("{\"2024-04-01\":{\"distance\":5000,\"workouts\":1},\"2024-05-01\":{\"distance\":3500.5,\"workouts\":2}}"), today));
+
+        ObjectNode node = write(statistics, today);
+        assertEquals(8500.5, node.get("totalDistance").asDouble(), 0.001);
+        assertEquals(3, node.get("totalWorkouts").asInt());
+        assertEquals(3500.5, node.get("monthDistance").asDouble(), 0.001);
+        assertEquals(2, node.get("monthWorkouts").asInt());
+        assertEquals(8500.5, node.get("yearDistance").asDouble(), 0.001);
+        assertEquals(3, node.get("yearWorkouts").asInt());
+    }
+
+    @Test
+    void removesDisappearedBuckets() throws Exception {
+        RollingStatistics statistics = monthly();
+        LocalDate today = LocalDate.of(2024, 5, 20);
+
+        statistics.update(buckets("{\"2024-04-01\":{\"distance\":5000,\"workouts\":1},\"2024-05-01\":{\"distance\":1000,\"workouts\":1}}"), today);
+        assertEquals(1, statistics.update(buckets("{\"2024-04-01\":{\"distance\":5000,\"workouts\":1}}"), today));
+
+        ObjectNode node = write(statistics, today);
+        assertEquals(5000.0, node.get("totalDistance").asDouble(), 0.001);
+        assertEquals(1, node.get("totalWorkouts").asInt());
+        assertEquals(0.0, node.get("monthDistance").asDouble(), 0.001);
+        assertEquals(0, node.get("monthWorkouts").asInt());
+        assertEquals(5000.0, node.get("yearDistance").asDouble(), 0.001);
+    }
+
+    @Test
+    void rollsWindowsOverYearBoundary() throws Exception {
+        RollingStatistics statistics = monthly();
+        String response = "{\"2023-12-01\":{\"distance\":2000,\"workouts\":2},\"2024-01-01\":{\"distance\":3000,\"workouts\":3}}";
+
+        // The January bucket is in the future on December 31st
+        statistics.update(buckets(response), LocalDate.of(2023, 12, 31));
+        ObjectNode december = write(statistics, LocalDate.of(2023, 12, 31));
+        assertEquals(2000.0, december.get("monthDistance").asDouble(), 0.001);
+        assertEquals(2000.0, december.get("yearDistance").asDouble(), 0.001);
+        assertEquals(5000.0, december.get("totalDistance").asDouble(), 0.001);
+
+        // No update on the next day, writing the windows moves them to the new day
+        ObjectNode january = write(statistics, LocalDate.of(2024, 1, 1));
+        assertEquals(3000.0, january.get("monthDistance").asDouble(), 0.001);
+        assertEquals(3, january.get("monthWorkouts").asInt());
+        assertEquals(3000.0, january.get("yearDistance").asDouble(), 0.001);
+        assertEquals(5000.0, january.get("totalDistance").asDouble(), 0.001);
+    }
+
+    @Test
+    void computesWeekAndLastThirtyDaysFromDailyBuckets() {
+        RollingStatistics statistics = new RollingStatistics(RollingStatistics.Window.WEEK, RollingStatistics.Window.LAST_30_DAYS);
+        // Wednesday
+        LocalDate today = LocalDate.of(2024, 5, 22);
+
+        statistics.begin(today);
+        statistics.put("1", day("2024-05-20T07:00:00Z"), 10000, 1);
+        statistics.put("2", day("2024-05-22T18:30:00+02:00"), 5000, 1);
+        statistics.put("3", day("2024-05-19"), 8000, 1);
+        statistics.put("4", day("2024-04-23"), 4000, 1);
+        statistics.put("5", day("2024-04-22"), 6000, 1);
+        assertEquals(5, statistics.end());
+
+        ObjectNode node = write(statistics, today);
+        assertEquals(15000.0, node.get("weekDistance").asDouble(), 0.001);
+        assertEquals(2, node.get("weekWorkouts").asInt());
+        assertEquals(27000.0, node.get("last30DaysDistance").asDouble(), 0.001);
+        assertEquals(4, node.get("last30DaysWorkouts").asInt());
+        assertFalse(node.has("monthDistance"));
+
+        // Workout 1 is moved to the previous week, workout 3 is deleted
+        statistics.begin(today);
+        statistics.put("1", day("2024-05-18"), 10000, 1);
+        statistics.put("2", day("2024-05-22"), 5000, 1);
+        statistics.put("4", day("2024-04-23"), 4000, 1);
+        statistics.put("5", day("2024-04-22"), 6000, 1);
+        assertEquals(2, statistics.end());
+
+        node = write(statistics, today);
+        assertEquals(5000.0, node.get("weekDistance").asDouble(), 0.001);
+        assertEquals(1, node.get("weekWorkouts").asInt());
+        assertEquals(19000.0, node.get("last30DaysDistance").asDouble(), 0.001);
+        assertEquals(3, node.get("last30DaysWorkouts").asInt());
+        assertEquals(25000.0, node.get("totalDistance").asDouble(), 0.001);
+    }
+
+    @Test
+    void slidesLastThirtyDaysWithoutUpdates() {
+        RollingStatistics statistics = new RollingStatistics(RollingStatistics.Window.LAST_30_DAYS);
+        LocalDate today = LocalDate.of(2024, 5, 22);
+
+        statistics.begin(today);
+        statistics.put("old", today.minusDays(29).toEpochDay(), 7000, 1);
+        statistics.put("recent", today.toEpochDay(), 2000, 1);
+        // Dated tomorrow, e.g. in a time zone ahead of the server
+        statistics.put("ahead", today.plusDays(1).toEpochDay(), 3000, 1);
+        statistics.end();
+        assertEquals(9000.0, write(statistics, today).get("last30DaysDistance").asDouble(), 0.001);
+
+        ObjectNode node = write(statistics, today.plusDays(1));
+        assertEquals(5000.0, node.get("last30DaysDistance").asDouble(), 0.001);
+        assertEquals(2, node.get("last30DaysWorkouts").asInt());
+
+        node = write(statistics, today.plusDays(31));
+        assertEquals(0.0, node.get("last30DaysDistance").asDouble(), 0.001);
+        assertEquals(12000.0, node.get("totalDistance").asDouble(), 0.001);
+    }
+
+    @Test
+    void reusesRingSlotsOfExpiredDays() {
+        RollingStatistics statistics = new RollingStatistics(RollingStatistics.Window.YEAR, RollingStatistics.Window.LAST_30_DAYS);
+        LocalDate today = LocalDate.of(2024, 12, 31);
+
+        statistics.begin(today);
+        statistics.put("old", LocalDate.of(2024, 1, 1).toEpochDay(), 7000, 1);
+        statistics.end();
+        assertEquals(7000.0, write(statistics, today).get("yearDistance").asDouble(), 0.001);
+
+        // The old day expired from the ring range, its slot is reused by a day within the new range
+        LocalDate later = today.plusDays(40);
+        LocalDate reusing = LocalDate.ofEpochDay(LocalDate.of(2024, 1, 1).toEpochDay() + 400);
+        statistics.begin(later);
+        statistics.put("old", LocalDate.of(2024, 1, 1).toEpochDay(), 7000, 1);
+        statistics.put("new", reusing.toEpochDay(), 3000, 1);
+        statistics.end();
+
+        // The windows are recomputed from the ring slots on the next day
+        ObjectNode node = write(statistics, later.plusDays(1));
+        assertEquals(3000.0, node.get("yearDistance").asDouble(), 0.001);
+        assertEquals(3000.0, node.get("last30DaysDistance").asDouble(), 0.001);
+        assertEquals(10000.0, node.get("totalDistance").asDouble(), 0.001);
+        assertEquals(2, node.get("totalWorkouts").asInt());
+    }
+
+    @Test
+    void countsBucketsDatedBeyondTheRingOnceTheirDayComes() {
+        RollingStatistics statistics = new RollingStatistics(RollingStatistics.Window.LAST_30_DAYS);
+        LocalDate today = LocalDate.of(2024, 5, 22);
+
+        statistics.begin(today);
+        statistics.put("far", today.plusDays(60).toEpochDay(), 4000, 1);
+        statistics.end();
+        assertEquals(0.0, write(statistics, today).get("last30DaysDistance").asDouble(), 0.001);
+
+        ObjectNode node = write(statistics, today.plusDays(60));
+        assertEquals(4000.0, node.get("last30DaysDistance").asDouble(), 0.001);
+        assertEquals(1, node.get("last30DaysWorkouts").asInt());
+    }
+
+    @Test
+    void restoresWindowsWhenTheDayMovesBack() {
+        RollingStatistics statistics = new RollingStatistics(RollingStatistics.Window.YEAR);
+        LocalDate today = LocalDate.of(2024, 5, 22);
+
+        statistics.begin(today);
+        statistics.put("1", today.minusDays(10).toEpochDay(), 4000, 1);
+        statistics.end();
+        assertEquals(0.0, write(statistics, today.plusYears(2)).get("yearDistance").asDouble(), 0.001);
+        assertEquals(4000.0, write(statistics, today).get("yearDistance").asDouble(), 0.001);
+    }
+
+    @Test
+    void countsUndatedBucketsInTotalsOnly() throws Exception {
+        RollingStatistics statistics = monthly();
+        LocalDate today = LocalDate.of(2024, 5, 20);
+
+        statistics.update(buckets("{\"unknown\":{\"distance\":1500,\"workouts\":1}}"), today);
+
+        ObjectNode node = write(statistics, today);
+        assertEquals(1500.0, node.get("totalDistance").asDouble(), 0.001);
+        assertEquals(0.0, node.get("yearDistance").asDouble(), 0.001);
+    }
+
+    private static RollingStatistics monthly() {
+        return new RollingStatistics(RollingStatistics.Window.MONTH, RollingStatistics.Window.YEAR);
+    }
+
+    private static JsonNode buckets(String json) throws Exception {
+        return MAPPER.readTree(json);
+    }
+
+    private static long day(String date) {
+        return RollingStatistics.parseEpochDay(date);
+    }
+
+    private static ObjectNode write(RollingStatistics statistics, LocalDate today) {
+        ObjectNode node = MAPPER.createObjectNode();
+        statistics.writeTotalsTo(node);
+        statistics.writeWindowsTo(node, today);
+        return node;
+    }
+}
@@ -0,0 +1,176 @@
+package com.slallemand.workouttracker2mqtt;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal MQTT 3.1.1 broker accepting connections, subscriptions and publishes, without routing
+ * messages to subscribers. It only counts the messages published on each topic.
+ *
+ * Acknowledgements of QoS 1 and 2 publishes can be delayed to simulate a slow broker. They are sent
+ * asynchronously, so that several publishes of a connection can be in flight at the same time.
+ */
+final class StubMqttBroker implements AutoCloseable {
+
+    private static final int CONNECT = 1;
+    private static final int PUBLISH = 3;
+    private static final int PUBREL = 6;
+    private static final int SUBSCRIBE = 8;
+    private static final int UNSUBSCRIBE = 10;
+    private static final int PINGREQ = 12;
+    private static final int DISCONNECT = 14;
+
+    private final ServerSocket serverSocket;
+    private final Map<String, AtomicInteger> publishes = new ConcurrentHashMap<>();
+    private final long ackDelayMs;
+    private final ScheduledExecutorService ackScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stub-mqtt-acks");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    StubMqttBroker() throws IOException {
+        this(0);
+    }
+
+    /**
+     * @param ackDelayMs Delay (milliseconds) before acknowledging QoS 1 and 2 publishes
+     */
+    StubMqttBroker(long ackDelayMs) throws IOException {
+        this.ackDelayMs = ackDelayMs;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptConnections, "stub-mqtt-broker");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return Broker URL, e.g. tcp://127.0.0.1:1883
+     */
+    String url() {
+        return "tcp://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Number of messages published on a topic
+     */
+    int publishCount(String topic) {
+        AtomicInteger count = publishes.get(topic);
+        return count != null ? count.get() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ackScheduler.shutdownNow();
+        serverSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread connection = new Thread(() -> serve(socket), "stub-mqtt-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                int header = in.read();
+                if (header < 0) {
+                    return;
+                }
+                byte[] packet = new byte[readRemainingLength(in)];
+                in.readFully(packet);
+
+                switch (header >> 4) {
+                    case CONNECT -> write(out, new byte[] {0x20, 0x02, 0x00, 0x00});
+                    case PUBLISH -> {
+                        int topicLength = ((packet[0] & 0xFF) << 8) | (packet[1] & 0xFF);
+                        String topic = new String(packet, 2, topicLength, StandardCharsets.UTF_8);
+                        publishes.computeIfAbsent(topic, t -> new AtomicInteger()).incrementAndGet();
+                        int qos = (header >> 1) & 0x03;
+                        if (qos > 0) {
+                            // PUBACK at QoS 1, PUBREC at QoS 2
+                            byte[] ack = {(byte) (qos == 1 ? 0x40 : 0x50), 0x02, packet[2 + topicLength], packet[3 + topicLength]};
+                            if (ackDelayMs > 0) {
+                                ackScheduler.schedule(() -> write(out, ack), ackDelayMs, TimeUnit.MILLISECONDS);
+                            } else {
+                                write(out, ack);
+                            }
+                        }
+                    }
+                    case PUBREL -> write(out, new byte[] {0x70, 0x02, packet[0], packet[1]});
+                    case SUBSCRIBE -> {
+                        // Grants QoS 0 to every topic filter
+                        int filters = 0;
+                        for (int position = 2; position < packet.length; filters++) {
+                            int filterLength = ((packet[position] & 0xFF) << 8) | (packet[position + 1] & 0xFF);
+                            position += 2 + filterLength + 1;
+                        }
+                        byte[] suback = new byte[4 + filters];
+                        suback[0] = (byte) 0x90;
+                        suback[1] = (byte) (2 + filters);
+                        suback[2] = packet[0];
+                        suback[3] = packet[1];
+                        write(out, suback);
+                    }
+                    case UNSUBSCRIBE -> write(out, new byte[] {(byte) 0xB0, 0x02, packet[0], packet[1]});
+                    case PINGREQ -> write(out, new byte[] {(byte) 0xD0, 0x00});
+                    case DISCONNECT -> {
+                        return;
+                    }
+                    default -> {
+                        // PUBACK, PUBREC and PUBCOMP from the client need no answer
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Connection closed by the client
+        }
+    }
+
+    /**
+     * Writes a packet, connections are written to by their reader thread and by the delayed acknowledgements
+     */
+    private static void write(OutputStream out, byte[] packet) {
+        synchronized (out) {
+            try {
+                out.write(packet);
+                out.flush();
+            } catch (IOException e) {
+                // Connection closed by the client
+            }
+        }
+    }
+
+    private static int readRemainingLength(DataInputStream in) throws IOException {
+        int length = 0;
+        int multiplier = 1;
+        int digit;
+        do {
+            digit = in.readUnsignedByte();
+            length += (digit & 0x7F) * multiplier;
+            multiplier *= 128;
+        } while ((digit & 0x80) != 0);
+        return length;
+    }
+}
@@ -0,0 +1,142 @@
+package com.slallemand.workouttracker2mqtt;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts a stub workout-tracker REST API and a stub MQTT broker for the integration tests.
+ *
+ * The workouts endpoint returns large responses, with the full per-point details of every workout,
+ * and a new latest workout on every request so that its analytics are computed on every tick.
+ * The {@code publish.latency.ms} argument delays the acknowledgements of the broker.
+ */
+public class StubWorkoutTrackerResource implements QuarkusTestResourceLifecycleManager {
+
+    static final int WORKOUT_COUNT = 30;
+    static final int POINTS_PER_WORKOUT = 3000;
+
+    private static final AtomicInteger workoutsRequests = new AtomicInteger();
+    private static volatile StubMqttBroker broker;
+
+    private HttpServer server;
+    private long publishLatencyMs = 0;
+
+    @Override
+    public void init(Map<String, String> initArgs) {
+        publishLatencyMs = Long.parseLong(initArgs.getOrDefault("publish.latency.ms", "0"));
+    }
+
+    @Override
+    public Map<String, String> start() {
+        try {
+            broker = new StubMqttBroker(publishLatencyMs);
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/api/v1/workouts", this::serveWorkouts);
+            server.createContext("/api/v1/statistics", this::serveStatistics);
+            server.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to start the stub servers", e);
+        }
+        return Map.of(
+            "workouttracker.api.server.url", "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort(),
+            "mqtt.broker.url", broker.url());
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        try {
+            if (broker != null) {
+                broker.close();
+            }
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    /**
+     * @return Number of requests served by the workouts endpoint
+     */
+    static int workoutsRequests() {
+        return workoutsRequests.get();
+    }
+
+    /**
+     * @return Number of messages published on a topic of the stub broker
+     */
+    static int publishCount(String topic) {
+        return broker != null ? broker.publishCount(topic) : 0;
+    }
+
+    private void serveWorkouts(HttpExchange exchange) throws IOException {
+        int request = workoutsRequests.incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        // Chunked, the response is generated while it is sent
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            out.write("{\"results\":[");
+            for (int workout = 0; workout < WORKOUT_COUNT; workout++) {
+                if (workout > 0) {
+                    out.write(',');
+                }
+                // The first workout is the latest one, with a new ID on every request
+                long id = workout == 0 ? 1_000_000L + request : WORKOUT_COUNT - workout;
+                String type = workout % 2 == 0 ? "running" : "cycling";
+                double totalDistance = POINTS_PER_WORKOUT * 5.0;
+                out.write("{\"id\":" + id + ",\"type\":\"" + type + "\",\"name\":\"Workout " + id + "\",\"date\":\"2024-05-" +
+                    String.format("%02d", 1 + workout % 28) + "T07:00:00Z\",\"data\":{\"totalDistance\":" + totalDistance +
+                    ",\"totalDuration\":" + POINTS_PER_WORKOUT * 1_500_000_000L + ",\"averageSpeed\":3.3,\"details\":{\"points\":[");
+                for (int point = 0; point < POINTS_PER_WORKOUT; point++) {
+                    if (point > 0) {
+                        out.write(',');
+                    }
+                    out.write("{\"time\":\"2024-05-01T07:00:00Z\",\"lat\":50." + (100000 + point) + ",\"lng\":4." + (100000 + point) +
+                        ",\"elevation\":" + (100 + point % 50) + ",\"totalDistance\":" + point * 5.0 +
+                        ",\"totalDuration\":" + point * 1_500_000_000L + ",\"extraMetrics\":{\"heart-rate\":" + (120 + point % 40) + "}}");
+                }
+                out.write("]}}}");
+            }
+            out.write("]}");
+        }
+    }
+
+    private void serveStatistics(HttpExchange exchange) throws IOException {
+        StringBuilder response = new StringBuilder("{\"results\":{\"buckets\":{");
+        String[] types = {"running", "cycling"};
+        for (int type = 0; type < types.length; type++) {
+            if (type > 0) {
+                response.append(',');
+            }
+            response.append('"').append(types[type]).append("\":{\"buckets\":{");
+            for (int month = 1; month <= 12; month++) {
+                if (month > 1) {
+                    response.append(',');
+                }
+                response.append("\"2024-").append(String.format("%02d", month)).append("-01\":{\"distance\":")
+                    .append(month * 10000.0).append(",\"workouts\":").append(month).append('}');
+            }
+            response.append("}}");
+        }
+        response.append("}}}");
+
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.slallemand.workouttracker2mqtt;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkoutAnalyticsTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    @Test
+    void findsFiveKilometerEffortInsideTenKilometerSeries() throws Exception {
+        // 10 km with a point every 100 m: 5:00/km, except 4:00/km from 3 km to 8 km
+        StringBuilder points = new StringBuilder("[");
+        long duration = 0;
+        for (int i = 0; i <= 100; i++) {
+            if (i > 0) {
+                int kilometer = (i - 1) / 10;
+                duration += (kilometer >= 3 && kilometer < 8 ? 24 : 30) * NANOS_PER_SECOND;
+                points.append(',');
+            }
+            points.append("{\"totalDistance\":").append(i * 100.0).append(",\"totalDuration\":").append(duration).append('}');
+        }
+        points.append(']');
+
+        JsonNode analytics = analyze(new WorkoutAnalytics(), 1, points.toString());
+
+        assertEquals(1, analytics.get("workoutId").asLong());
+        assertEquals(101, analytics.get("points").asInt());
+        assertEquals(10, analytics.get("splits").size());
+        assertEquals(300.0, analytics.get("splits").get(0).asDouble(), 0.01);
+        assertEquals(240.0, analytics.get("splits").get(3).asDouble(), 0.01);
+        assertEquals(240.0, analytics.get("splits").get(7).asDouble(), 0.01);
+        assertEquals(300.0, analytics.get("splits").get(8).asDouble(), 0.01);
+        assertEquals(240.0, analytics.get("best1km").asDouble(), 0.01);
+        assertEquals(1200.0, analytics.get("best5km").asDouble(), 0.01);
+        assertTrue(analytics.get("paceVariability").asDouble() > 0);
+    }
+
+    @Test
+    void interpolatesSplitsBetweenPoints() throws Exception {
+        // A point every 300 m at a constant 5:00/km, kilometer marks fall between points
+        StringBuilder points = new StringBuilder("[");
+        for (int i = 0; i <= 10; i++) {
+            if (i > 0) {
+                points.append(',');
+            }
+            points.append("{\"totalDistance\":").append(i * 300.0).append(",\"totalDuration\":").append(i * 90 * NANOS_PER_SECOND).append('}');
+        }
+        points.append(']');
+
+        JsonNode analytics = analyze(new WorkoutAnalytics(), 2, points.toString());
+
+        assertEquals(3, analytics.get("splits").size());
+        for (JsonNode split : analytics.get("splits")) {
+            assertEquals(300.0, split.asDouble(), 0.01);
+        }
+        assertEquals(300.0, analytics.get("best1km").asDouble(), 0.01);
+        assertEquals(0.0, analytics.get("paceVariability").asDouble(), 0.01);
+        assertFalse(analytics.has("best5km"));
+    }
+
+    @Test
+    void accumulatesIncrementalPointsAndIgnoresNoiseInElevationGain() throws Exception {
+        // Per-point distance and duration only, elevation climbs below 1 m are GPS noise
+        String points = "[" +
+            "{\"distance\":0,\"duration\":0,\"elevation\":100.0,\"extraMetrics\":{\"heartRate\":120,\"zones\":[1,2]}}," +
+            "{\"distance\":500,\"duration\":150000000000,\"elevation\":100.5}," +
+            "{\"distance\":500,\"duration\":150000000000,\"elevation\":100.2,\"lat\":null}," +
+            "{\"distance\":500,\"duration\":150000000000,\"elevation\":102.0}," +
+            "{\"distance\":500,\"duration\":150000000000,\"elevation\":101.0}," +
+            "{\"distance\":500,\"duration\":150000000000,\"elevation\":105.0}" +
+            "]";
+
+        JsonNode analytics = analyze(new WorkoutAnalytics(), 3, points);
+
+        assertEquals(6, analytics.get("points").asInt());
+        assertEquals(2, analytics.get("splits").size());
+        assertEquals(300.0, analytics.get("splits").get(1).asDouble(), 0.01);
+        assertEquals(6.0, analytics.get("elevationGain").asDouble(), 0.01);
+    }
+
+    @Test
+    void analyzesWorkoutAgainOnceItsDetailsAreAvailable() throws Exception {
+        WorkoutAnalytics workoutAnalytics = new WorkoutAnalytics();
+
+        try (JsonParser parser = pointsParser("[]")) {
+            assertNull(workoutAnalytics.analyze(MAPPER, 4, parser));
+        }
+        assertFalse(workoutAnalytics.isAnalyzed(4));
+        assertNull(workoutAnalytics.getAnalytics(4));
+
+        String points = "[{\"totalDistance\":0,\"totalDuration\":0},{\"totalDistance\":1000,\"totalDuration\":300000000000}]";
+        analyze(workoutAnalytics, 4, points);
+        assertTrue(workoutAnalytics.isAnalyzed(4));
+        assertFalse(workoutAnalytics.isAnalyzed(5));
+    }
+
+    @Test
+    void skipsPointsGoingBackwards() throws Exception {
+        String points = "[" +
+            "{\"totalDistance\":0,\"totalDuration\":0}," +
+            "{\"totalDistance\":600,\"totalDuration\":180000000000}," +
+            "{\"totalDistance\":550,\"totalDuration\":190000000000}," +
+            "{\"totalDistance\":1200,\"totalDuration\":360000000000}" +
+            "]";
+
+        JsonNode analytics = analyze(new WorkoutAnalytics(), 6, points);
+
+        assertEquals(3, analytics.get("points").asInt());
+        assertEquals(300.0, analytics.get("splits").get(0).asDouble(), 0.01);
+    }
+
+    @Test
+    void growsBuffersBeyondInitialCapacity() throws Exception {
+        // 3000 points of 10 m at 5:00/km, more than the initial buffer capacity
+        StringBuilder points = new StringBuilder("[");
+        for (int i = 0; i < 3000; i++) {
+            if (i > 0) {
+                points.append(',');
+            }
+            points.append("{\"totalDistance\":").append(i * 10.0).append(",\"totalDuration\":").append(i * 3 * NANOS_PER_SECOND).append('}');
+        }
+        points.append(']');
+
+        WorkoutAnalytics workoutAnalytics = new WorkoutAnalytics();
+        JsonNode analytics = analyze(workoutAnalytics, 7, points.toString());
+
+        assertEquals(3000, workoutAnalytics.getPointCount());
+        assertEquals(29, analytics.get("splits").size());
+        assertEquals(1500.0, analytics.get("best5km").asDouble(), 0.01);
+    }
+
+    private static JsonNode analyze(WorkoutAnalytics workoutAnalytics, long workoutId, String points) throws Exception {
+        String json;
+        try (JsonParser parser = pointsParser(points)) {
+            json = workoutAnalytics.analyze(MAPPER, workoutId, parser);
+        }
+        assertTrue(json != null, "no analytics computed");
+        assertEquals(json, workoutAnalytics.getAnalytics(workoutId));
+        return MAPPER.readTree(json);
+    }
+
+    private static JsonParser pointsParser(String points) throws Exception {
+        JsonParser parser = MAPPER.getFactory().createParser(points);
+        parser.nextToken();
+        return parser;
+    }
+}
@@ -0,0 +1,98 @@
+package com.slallemand.workouttracker2mqtt;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkoutsResponseParserTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // The details come before the ID in the second workout, they are found by position
+    private static final String RESPONSE = "{\"total\":4,\"results\":[" +
+        "{\"id\":1,\"type\":\"running\",\"date\":\"2024-05-01T07:00:00Z\",\"data\":{\"totalDistance\":5000,\"details\":{\"points\":[{\"totalDistance\":0}]}}}," +
+        "{\"data\":{\"details\":{\"laps\":[],\"points\":[{\"totalDistance\":0},{\"totalDistance\":100}]},\"totalDistance\":10000},\"type\":\"Running\",\"id\":3,\"date\":\"2024-05-03\"}," +
+        "{\"id\":2,\"type\":\"cycling\",\"date\":\"2024-05-02\",\"data\":{\"totalDistance\":30000,\"details\":null}}," +
+        "{\"id\":4,\"type\":\"swimming\",\"date\":\"2024-05-04\",\"data\":{\"totalDistance\":1000}}" +
+        "]}";
+
+    @Test
+    void findsLatestWorkoutOfEachSelectedTypeWithoutDetails() throws Exception {
+        List<String> seen = new ArrayList<>();
+        WorkoutsResponseParser.Scan scan = WorkoutsResponseParser.scan(MAPPER, stream(RESPONSE), Set.of("running", "cycling"),
+            (workoutType, workout) -> seen.add(workoutType + ":" + workout.get("id").asLong()));
+
+        assertEquals(4, scan.workoutCount());
+        assertEquals(List.of("running:1", "running:3", "cycling:2"), seen);
+        assertEquals(2, scan.latest().size());
+
+        WorkoutsResponseParser.Latest running = scan.latest().get("running");
+        assertEquals(3, running.id());
+        assertEquals(1, running.index());
+        assertTrue(running.hasDetails());
+        assertFalse(running.workout().get("data").has("details"));
+        assertEquals(10000, running.workout().get("data").get("totalDistance").asInt());
+
+        WorkoutsResponseParser.Latest cycling = scan.latest().get("cycling");
+        assertEquals(2, cycling.index());
+        assertFalse(cycling.hasDetails());
+    }
+
+    @Test
+    void streamsPointsOfWorkoutsByPosition() throws Exception {
+        List<String> read = new ArrayList<>();
+        WorkoutsResponseParser.readPoints(MAPPER, stream(RESPONSE), Map.of(
+            0, points -> read.add("0:" + countPoints(points)),
+            1, points -> read.add("1:" + countPoints(points))));
+
+        assertEquals(List.of("0:1", "1:2"), read);
+    }
+
+    @Test
+    void acceptsTopLevelArray() throws Exception {
+        WorkoutsResponseParser.Scan scan = WorkoutsResponseParser.scan(MAPPER,
+            stream("[{\"id\":7,\"type\":\"running\",\"date\":\"2024-04-30\"},{\"id\":5,\"type\":\"running\",\"date\":\"2024-05-01\"}]"),
+            Set.of("running"), (workoutType, workout) -> { });
+
+        assertEquals(2, scan.workoutCount());
+        assertEquals(7, scan.latest().get("running").id());
+    }
+
+    @Test
+    void rejectsResponsesWithoutWorkouts() {
+        IOException error = assertThrows(IOException.class, () -> WorkoutsResponseParser.scan(MAPPER,
+            stream("{\"error\":\"unauthorized\",\"status\":401}"), Set.of("running"), (workoutType, workout) -> { }));
+        assertTrue(error.getMessage().contains("[error, status]"));
+
+        assertThrows(IOException.class, () -> WorkoutsResponseParser.scan(MAPPER,
+            stream("{\"results\":[{\"id\":1,\"type\":\"running\"}"), Set.of("running"), (workoutType, workout) -> { }));
+    }
+
+    private static int countPoints(JsonParser points) throws IOException {
+        int count = 0;
+        while (points.nextToken() != JsonToken.END_ARRAY) {
+            points.skipChildren();
+            count++;
+        }
+        return count;
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
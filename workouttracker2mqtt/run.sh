@@ -60,7 +60,16 @@ if bashio::config.has_value 'quakus_log_level'; then
     export QUARKUS_LOG_LEVEL=$(bashio::config 'quakus_log_level')
 fi
 
+# Optional low-memory profile for small devices
+# Caps the JVM heap and threads, and lowers the response size buffered in memory
+JAVA_OPTS=""
+if bashio::config.true 'low_memory'; then
+    bashio::log.info "Using low-memory profile"
+    export QUARKUS_PROFILE=lowmem
+    JAVA_OPTS="-XX:+UseSerialGC -Xms16m -Xmx64m -Xss512k -XX:MaxMetaspaceSize=96m -XX:ReservedCodeCacheSize=32m -XX:TieredStopAtLevel=1 -XX:MaxDirectMemorySize=16m"
+fi
+
 # Start the application
 cd /app
 env | sort
-exec java -jar quarkus-run.jar
+exec java ${JAVA_OPTS} -jar quarkus-run.jar